@@ -0,0 +1,254 @@
+package de.thi.jbsa.prototype.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.event.NotificationEvent;
+
+/**
+ * Compact binary format of the commands and events sent between the services.
+ * <p>
+ * Every payload starts with the format version and a type tag, followed by the fields of the type in a fixed order. UUIDs
+ * are written as two longs, strings as length-prefixed UTF-8, nullable values with a leading presence flag. A new field is
+ * added at the end of its type together with a new version, the decoder reads all older versions.
+ */
+public final class BinaryCodec {
+
+  public static final byte VERSION = 1;
+
+  /**
+   * The tags are part of the wire format and must never change
+   */
+  public enum Type {
+    POST_MESSAGE_CMD(1, PostMessageCmd.class),
+    MESSAGE_POSTED_EVENT(2, MessagePostedEvent.class),
+    MENTION_EVENT(3, MentionEvent.class),
+    MESSAGE_REPEATED_EVENT(4, MessageRepeatedEvent.class),
+    NOTIFICATION_EVENT(5, NotificationEvent.class);
+
+    private final Class<?> javaType;
+
+    private final byte tag;
+
+    Type(int tag, Class<?> javaType) {
+      this.tag = (byte) tag;
+      this.javaType = javaType;
+    }
+
+    public static Type of(Class<?> javaType) {
+      for (Type type : values()) {
+        if (type.javaType == javaType) {
+          return type;
+        }
+      }
+      return null;
+    }
+
+    private static Type ofTag(byte tag) {
+      for (Type type : values()) {
+        if (type.tag == tag) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("Unknown type tag " + tag);
+    }
+  }
+
+  private BinaryCodec() {
+  }
+
+  public static Object decode(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      byte version = in.readByte();
+      if (version < 1 || version > VERSION) {
+        throw new IllegalArgumentException("Unsupported format version " + version);
+      }
+      Type type = Type.ofTag(in.readByte());
+      UUID uuid = readUuid(in);
+      // the uuids are final fields, every value is created with its uuid
+      switch (type) {
+        case POST_MESSAGE_CMD:
+          return new PostMessageCmd(uuid, readString(in), readString(in));
+        case MESSAGE_POSTED_EVENT: {
+          Long entityId = readLong(in);
+          return new MessagePostedEvent(uuid, readUuid(in), readString(in), entityId, readString(in));
+        }
+        case MENTION_EVENT: {
+          Long entityId = readLong(in);
+          MentionEvent event = new MentionEvent(uuid, readUuid(in), readString(in), readIntList(in), readString(in));
+          event.setEntityId(entityId);
+          return event;
+        }
+        case MESSAGE_REPEATED_EVENT: {
+          Long entityId = readLong(in);
+          MessageRepeatedEvent event = new MessageRepeatedEvent(uuid, in.readInt(), readUuid(in), readUuid(in));
+          event.setEntityId(entityId);
+          return event;
+        }
+        case NOTIFICATION_EVENT: {
+          Long entityId = readLong(in);
+          return new NotificationEvent(uuid, readUuid(in), readString(in), entityId, readString(in));
+        }
+        default:
+          throw new IllegalArgumentException("Unsupported type " + type);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot decode payload of " + bytes.length + " bytes", e);
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if the type of the value isn't supported, see {@link #supports(Class)}
+   */
+  public static byte[] encode(Object value) {
+    Type type = Type.of(value.getClass());
+    if (type == null) {
+      throw new IllegalArgumentException("Unsupported type " + value.getClass());
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeByte(type.tag);
+      switch (type) {
+        case POST_MESSAGE_CMD: {
+          PostMessageCmd cmd = (PostMessageCmd) value;
+          writeUuid(out, cmd.getUuid());
+          writeString(out, cmd.getUserId());
+          writeString(out, cmd.getContent());
+          break;
+        }
+        case MESSAGE_POSTED_EVENT: {
+          MessagePostedEvent event = (MessagePostedEvent) value;
+          writeUuid(out, event.getUuid());
+          writeLong(out, event.getEntityId());
+          writeUuid(out, event.getCmdUuid());
+          writeString(out, event.getContent());
+          writeString(out, event.getUserId());
+          break;
+        }
+        case MENTION_EVENT: {
+          MentionEvent event = (MentionEvent) value;
+          writeUuid(out, event.getUuid());
+          writeLong(out, event.getEntityId());
+          writeUuid(out, event.getCausationUuid());
+          writeString(out, event.getMentionedUser());
+          writeIntList(out, event.getOffsets());
+          writeString(out, event.getUserId());
+          break;
+        }
+        case MESSAGE_REPEATED_EVENT: {
+          MessageRepeatedEvent event = (MessageRepeatedEvent) value;
+          writeUuid(out, event.getUuid());
+          writeLong(out, event.getEntityId());
+          out.writeInt(event.getOccurCount());
+          writeUuid(out, event.getOriginalMessageUUID());
+          writeUuid(out, event.getCurrentMessageEventUUID());
+          break;
+        }
+        case NOTIFICATION_EVENT: {
+          NotificationEvent event = (NotificationEvent) value;
+          writeUuid(out, event.getUuid());
+          writeLong(out, event.getEntityId());
+          writeUuid(out, event.getCmdUuid());
+          writeString(out, event.getContent());
+          writeString(out, event.getUserId());
+          break;
+        }
+        default:
+          throw new IllegalArgumentException("Unsupported type " + type);
+      }
+    } catch (IOException e) {
+      // cannot happen for an in-memory stream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static List<Integer> readIntList(DataInputStream in)
+    throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    List<Integer> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(in.readInt());
+    }
+    return list;
+  }
+
+  private static Long readLong(DataInputStream in)
+    throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  private static String readString(DataInputStream in)
+    throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] utf8 = new byte[length];
+    in.readFully(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  private static UUID readUuid(DataInputStream in)
+    throws IOException {
+    return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+  }
+
+  public static boolean supports(Class<?> javaType) {
+    return Type.of(javaType) != null;
+  }
+
+  private static void writeIntList(DataOutputStream out, List<Integer> list)
+    throws IOException {
+    if (list == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(list.size());
+    for (Integer value : list) {
+      out.writeInt(value);
+    }
+  }
+
+  private static void writeLong(DataOutputStream out, Long value)
+    throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+    throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+  }
+
+  private static void writeUuid(DataOutputStream out, UUID value)
+    throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value.getMostSignificantBits());
+      out.writeLong(value.getLeastSignificantBits());
+    }
+  }
+}
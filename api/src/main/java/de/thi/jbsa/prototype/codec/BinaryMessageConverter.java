@@ -0,0 +1,55 @@
+package de.thi.jbsa.prototype.codec;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+/**
+ * Sends the commands and events of the {@link BinaryCodec} as {@link BytesMessage}s, the type is also set as JMSType
+ * header. Everything else, and every incoming message that isn't in the binary format (e.g. Java-serialized events still
+ * on the queue after an update), is handled by a {@link SimpleMessageConverter}.
+ */
+public class BinaryMessageConverter
+  implements MessageConverter {
+
+  /**
+   * Prefix of the JMSType header of binary encoded messages, followed by the type name
+   */
+  public static final String TYPE_PREFIX = "studychat.";
+
+  private final MessageConverter fallback = new SimpleMessageConverter();
+
+  @Override
+  public Object fromMessage(Message message)
+    throws JMSException, MessageConversionException {
+    String jmsType = message.getJMSType();
+    if (!(message instanceof BytesMessage) || jmsType == null || !jmsType.startsWith(TYPE_PREFIX)) {
+      return fallback.fromMessage(message);
+    }
+    BytesMessage bytesMessage = (BytesMessage) message;
+    byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+    bytesMessage.readBytes(bytes);
+    try {
+      return BinaryCodec.decode(bytes);
+    } catch (IllegalArgumentException e) {
+      throw new MessageConversionException("Cannot decode message of type " + jmsType, e);
+    }
+  }
+
+  @Override
+  public Message toMessage(Object object, Session session)
+    throws JMSException, MessageConversionException {
+    BinaryCodec.Type type = BinaryCodec.Type.of(object.getClass());
+    if (type == null) {
+      return fallback.toMessage(object, session);
+    }
+    BytesMessage message = session.createBytesMessage();
+    message.setJMSType(TYPE_PREFIX + type.name());
+    message.writeBytes(BinaryCodec.encode(object));
+    return message;
+  }
+}
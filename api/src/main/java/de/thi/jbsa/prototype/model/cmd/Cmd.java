@@ -8,5 +8,10 @@ import java.io.Serializable;
 public interface Cmd
   extends Serializable {
 
+  /**
+   * Commands of the same user are processed in order, commands of different users may be processed concurrently
+   */
+  String getUserId();
+
   java.util.UUID getUuid();
 }
@@ -1,19 +1,32 @@
 package de.thi.jbsa.prototype.model.cmd;
 
 import java.util.UUID;
-import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.NoArgsConstructor;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-04-01
  */
 @Data
-@AllArgsConstructor
-@NoArgsConstructor
 public class PostMessageCmd
   implements Cmd {
-  private final UUID uuid = UUID.randomUUID();
+  private final UUID uuid;
   private String userId;
   private String content;
+
+  public PostMessageCmd() {
+    this.uuid = UUID.randomUUID();
+  }
+
+  public PostMessageCmd(String userId, String content) {
+    this(UUID.randomUUID(), userId, content);
+  }
+
+  /**
+   * @param uuid of the command, e.g. derived from the idempotency key of the client
+   */
+  public PostMessageCmd(UUID uuid, String userId, String content) {
+    this.uuid = uuid;
+    this.userId = userId;
+    this.content = content;
+  }
 }
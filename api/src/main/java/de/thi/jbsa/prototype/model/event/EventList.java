@@ -13,5 +13,25 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class EventList {
 
+  /**
+   * JMS property with the position of an event on the UI topic
+   */
+  public static final String POSITION_PROPERTY = "studychat_position";
+
   private List<AbstractEvent> events;
+
+  /**
+   * Position of the last event contained, pass it as {@code after} to get the next events
+   */
+  private long position;
+
+  /**
+   * More events are available after the position, ask again right away
+   */
+  private boolean hasMore;
+
+  /**
+   * Too many events were missed to return them, the client has to load the messages again instead
+   */
+  private boolean reloadRequired;
 }
@@ -2,26 +2,51 @@ package de.thi.jbsa.prototype.model.event;
 
 import java.util.List;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-04-21
  */
 @Data
-@AllArgsConstructor
-@NoArgsConstructor
 @EqualsAndHashCode(of = {"uuid"}, callSuper = false)
 public class MentionEvent
   extends AbstractEvent {
 
-  private final UUID uuid = UUID.randomUUID();
+  /**
+   * JMS property with the mentioned user on the UI topic, frontends select the mentions of their users by it
+   */
+  public static final String RECIPIENT_PROPERTY = "studychat_recipient";
+
+  private final UUID uuid;
 
   private UUID causationUuid;
 
   private String mentionedUser;
 
+  /**
+   * Offsets of the {@code @} of every mention of the user in the content of the message
+   */
+  private List<Integer> offsets;
+
   private String userId;
+
+  public MentionEvent() {
+    this.uuid = UUID.randomUUID();
+  }
+
+  public MentionEvent(UUID causationUuid, String mentionedUser, List<Integer> offsets, String userId) {
+    this(UUID.randomUUID(), causationUuid, mentionedUser, offsets, userId);
+  }
+
+  /**
+   * @param uuid of the event, for an event rebuilt from stored data
+   */
+  public MentionEvent(UUID uuid, UUID causationUuid, String mentionedUser, List<Integer> offsets, String userId) {
+    this.uuid = uuid;
+    this.causationUuid = causationUuid;
+    this.mentionedUser = mentionedUser;
+    this.offsets = offsets;
+    this.userId = userId;
+  }
 }
@@ -1,22 +1,18 @@
 package de.thi.jbsa.prototype.model.event;
 
 import java.util.UUID;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-04-01
  */
 @Data
-@AllArgsConstructor
-@NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
 public class MessagePostedEvent
   extends AbstractEvent {
 
-  private final UUID uuid = UUID.randomUUID();
+  private final UUID uuid;
 
   private UUID cmdUuid;
 
@@ -25,4 +21,23 @@ public class MessagePostedEvent
   private Long entityId;
 
   private String userId;
+
+  public MessagePostedEvent() {
+    this.uuid = UUID.randomUUID();
+  }
+
+  public MessagePostedEvent(UUID cmdUuid, String content, Long entityId, String userId) {
+    this(UUID.randomUUID(), cmdUuid, content, entityId, userId);
+  }
+
+  /**
+   * @param uuid of the event, for an event rebuilt from stored data
+   */
+  public MessagePostedEvent(UUID uuid, UUID cmdUuid, String content, Long entityId, String userId) {
+    this.uuid = uuid;
+    this.cmdUuid = cmdUuid;
+    this.content = content;
+    this.entityId = entityId;
+    this.userId = userId;
+  }
 }
@@ -1,30 +1,50 @@
 package de.thi.jbsa.prototype.model.event;
 
 import java.util.UUID;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 12/5/20
  */
 @Data
-@AllArgsConstructor
-@RequiredArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-@Builder
 public class MessageRepeatedEvent
   extends AbstractEvent {
 
-  private final UUID uuid = UUID.randomUUID();
+  /**
+   * Completed by lombok, only sets the same default as the field
+   */
+  public static class MessageRepeatedEventBuilder {
+
+    private int occurCount = 2;
+  }
+
+  private final UUID uuid;
 
-  @Builder.Default
   private int occurCount = 2;
 
   private UUID originalMessageUUID;
 
   private UUID currentMessageEventUUID;
 
+  public MessageRepeatedEvent() {
+    this.uuid = UUID.randomUUID();
+  }
+
+  @Builder
+  public MessageRepeatedEvent(int occurCount, UUID originalMessageUUID, UUID currentMessageEventUUID) {
+    this(UUID.randomUUID(), occurCount, originalMessageUUID, currentMessageEventUUID);
+  }
+
+  /**
+   * @param uuid of the event, for an event rebuilt from stored data
+   */
+  public MessageRepeatedEvent(UUID uuid, int occurCount, UUID originalMessageUUID, UUID currentMessageEventUUID) {
+    this.uuid = uuid;
+    this.occurCount = occurCount;
+    this.originalMessageUUID = originalMessageUUID;
+    this.currentMessageEventUUID = currentMessageEventUUID;
+  }
 }
@@ -1,19 +1,15 @@
 package de.thi.jbsa.prototype.model.event;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
 
 import java.util.UUID;
 
 @Data
-@AllArgsConstructor
-@NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
 public class NotificationEvent extends AbstractEvent {
 
-  private final UUID uuid = UUID.randomUUID();
+  private final UUID uuid;
 
   private UUID cmdUuid;
 
@@ -23,4 +19,22 @@ public class NotificationEvent extends AbstractEvent {
 
   private String userId;
 
+  public NotificationEvent() {
+    this.uuid = UUID.randomUUID();
+  }
+
+  public NotificationEvent(UUID cmdUuid, String content, Long entityId, String userId) {
+    this(UUID.randomUUID(), cmdUuid, content, entityId, userId);
+  }
+
+  /**
+   * @param uuid of the event, for an event rebuilt from stored data
+   */
+  public NotificationEvent(UUID uuid, UUID cmdUuid, String content, Long entityId, String userId) {
+    this.uuid = uuid;
+    this.cmdUuid = cmdUuid;
+    this.content = content;
+    this.entityId = entityId;
+    this.userId = userId;
+  }
 }
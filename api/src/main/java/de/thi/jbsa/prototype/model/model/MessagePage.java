@@ -0,0 +1,22 @@
+package de.thi.jbsa.prototype.model.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of the message history, newest message first.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MessagePage {
+
+  private List<Message> messages;
+
+  /**
+   * Entity id to pass as {@code before} for the next (older) page, {@code null} on the last page
+   */
+  private Long nextBefore;
+}
@@ -0,0 +1,107 @@
+package de.thi.jbsa.prototype.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.event.NotificationEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+
+class BinaryCodecTest {
+
+  private static Object roundTrip(Object value) {
+    return BinaryCodec.decode(BinaryCodec.encode(value));
+  }
+
+  @Test
+  void decodeRejectsUnknownVersion() {
+    byte[] bytes = BinaryCodec.encode(new PostMessageCmd("timmy", "hi"));
+    bytes[0] = BinaryCodec.VERSION + 1;
+    assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(bytes));
+  }
+
+  @Test
+  void encodeIsSmallerThanJavaSerialization()
+    throws Exception {
+    MessagePostedEvent event = new MessagePostedEvent(UUID.randomUUID(), "Hello @tommy", 42L, "timmy");
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+      out.writeObject(event);
+    }
+    assertTrue(BinaryCodec.encode(event).length * 4 < serialized.size());
+  }
+
+  @Test
+  void encodeRejectsUnsupportedType() {
+    assertFalse(BinaryCodec.supports(Message.class));
+    assertThrows(IllegalArgumentException.class, () -> BinaryCodec.encode(new Message()));
+  }
+
+  @Test
+  void roundTripMentionEvent() {
+    MentionEvent event = new MentionEvent(UUID.randomUUID(), "tommy", Arrays.asList(0, 17), "timmy");
+    event.setEntityId(7L);
+    MentionEvent decoded = (MentionEvent) roundTrip(event);
+    assertEquals(event.getUuid(), decoded.getUuid());
+    assertEquals(event.getCausationUuid(), decoded.getCausationUuid());
+    assertEquals("tommy", decoded.getMentionedUser());
+    assertEquals(Arrays.asList(0, 17), decoded.getOffsets());
+    assertEquals("timmy", decoded.getUserId());
+    assertEquals(7L, decoded.getEntityId());
+  }
+
+  @Test
+  void roundTripMessagePostedEvent() {
+    MessagePostedEvent event = new MessagePostedEvent(UUID.randomUUID(), "Grüße aus Ingolstadt 😀", 42L, "timmy");
+    assertEquals(event, roundTrip(event));
+  }
+
+  @Test
+  void roundTripMessagePostedEventWithNulls() {
+    MessagePostedEvent event = new MessagePostedEvent();
+    MessagePostedEvent decoded = (MessagePostedEvent) roundTrip(event);
+    assertEquals(event, decoded);
+    assertNull(decoded.getContent());
+    assertNull(decoded.getEntityId());
+  }
+
+  @Test
+  void roundTripMessageRepeatedEvent() {
+    MessageRepeatedEvent event = MessageRepeatedEvent.builder()
+                                                     .occurCount(3)
+                                                     .originalMessageUUID(UUID.randomUUID())
+                                                     .currentMessageEventUUID(UUID.randomUUID())
+                                                     .build();
+    event.setEntityId(9L);
+    assertEquals(event, roundTrip(event));
+  }
+
+  @Test
+  void roundTripNotificationEvent() {
+    NotificationEvent event = new NotificationEvent(UUID.randomUUID(), "ping", 3L, "timmy");
+    assertEquals(event, roundTrip(event));
+  }
+
+  @Test
+  void roundTripPostMessageCmd() {
+    PostMessageCmd cmd = new PostMessageCmd("timmy", "I prefer small payloads");
+    assertEquals(cmd, roundTrip(cmd));
+  }
+
+  @Test
+  void roundTripKeepsGivenUuid() {
+    UUID uuid = UUID.randomUUID();
+    MessagePostedEvent event = new MessagePostedEvent(uuid, UUID.randomUUID(), "hi", 1L, "timmy");
+    assertEquals(uuid, ((MessagePostedEvent) roundTrip(event)).getUuid());
+  }
+}
@@ -0,0 +1,207 @@
+package de.thi.jbsa.prototype.aop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Replaces all terms of a dictionary in a single scan of the content, independent of the number of terms.
+ * <p>
+ * The terms are compiled into an Aho-Corasick automaton, matching is case-insensitive. Overlapping matches are resolved
+ * leftmost-longest, every match is replaced by the replacement as a whole. Instances are immutable and thread-safe.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho–Corasick algorithm</a>
+ */
+public final class AhoCorasickCensor {
+
+  private static final int ROOT = 0;
+
+  /**
+   * Failure link of every node: the node of the longest proper suffix that is also a prefix of a term
+   */
+  private final int[] failure;
+
+  /**
+   * Output link of every node: the nearest node on its failure chain in which a term ends, {@link #ROOT} if there is none
+   */
+  private final int[] output;
+
+  private final String replacement;
+
+  private final int termCount;
+
+  /**
+   * Open addressing hash table of the trie edges, the key combines the node and the (lower case) character
+   */
+  private final long[] transitionKeys;
+
+  private final int[] transitionTargets;
+
+  /**
+   * Length of the term ending in the node, 0 if no term ends exactly there
+   */
+  private final int[] termLength;
+
+  public AhoCorasickCensor(Collection<String> terms, String replacement) {
+    this.replacement = replacement;
+    List<Map<Character, Integer>> children = new ArrayList<>();
+    List<Integer> lengths = new ArrayList<>();
+    children.add(new HashMap<>());
+    lengths.add(0);
+    int edgeCount = 0;
+    int count = 0;
+    for (String term : terms) {
+      if (term == null || term.isEmpty()) {
+        continue;
+      }
+      count++;
+      int node = ROOT;
+      for (int i = 0; i < term.length(); i++) {
+        char c = Character.toLowerCase(term.charAt(i));
+        Integer next = children.get(node).get(c);
+        if (next == null) {
+          next = children.size();
+          children.add(new HashMap<>());
+          lengths.add(0);
+          children.get(node).put(c, next);
+          edgeCount++;
+        }
+        node = next;
+      }
+      lengths.set(node, term.length());
+    }
+    this.termCount = count;
+
+    int capacity = Integer.highestOneBit(Math.max(edgeCount, 1) * 2) * 2;
+    transitionKeys = new long[capacity];
+    transitionTargets = new int[capacity];
+    Arrays.fill(transitionKeys, -1L);
+    failure = new int[children.size()];
+    output = new int[children.size()];
+    termLength = lengths.stream().mapToInt(Integer::intValue).toArray();
+
+    // breadth first, so the failure link of a node is always computed before the node itself is used as one
+    Queue<Integer> queue = new ArrayDeque<>();
+    queue.add(ROOT);
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      int fallback = failure[node];
+      output[node] = termLength[fallback] > 0 ? fallback : output[fallback];
+      for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+        char c = edge.getKey();
+        int child = edge.getValue();
+        putTransition(node, c, child);
+        if (node != ROOT) {
+          fallback = failure[node];
+          while (fallback != ROOT && !children.get(fallback).containsKey(c)) {
+            fallback = failure[fallback];
+          }
+          Integer target = children.get(fallback).get(c);
+          failure[child] = target != null ? target : ROOT;
+        }
+        queue.add(child);
+      }
+    }
+  }
+
+  private static long key(int node, char c) {
+    return ((long) node << 16) | c;
+  }
+
+  /**
+   * @return the content with every term replaced, or the very same instance if no term was found
+   */
+  public String censor(String content) {
+    if (content == null || termCount == 0) {
+      return content;
+    }
+    // start/end pairs of the matches to replace, ordered by position
+    int[] matches = null;
+    int matchCount = 0;
+    int node = ROOT;
+    for (int i = 0; i < content.length(); i++) {
+      node = next(node, Character.toLowerCase(content.charAt(i)));
+      // the terms ending here from the longest to the shortest, the first one which fits to the previous matches is taken
+      for (int termNode = termLength[node] > 0 ? node : output[node]; termNode != ROOT; termNode = output[termNode]) {
+        int start = i - termLength[termNode] + 1;
+        // a match starting further left swallows the previous ones, otherwise the previous (leftmost) match wins
+        int kept = matchCount;
+        while (kept > 0 && start <= matches[2 * kept - 2]) {
+          kept--;
+        }
+        if (kept > 0 && start <= matches[2 * kept - 1]) {
+          continue;
+        }
+        matchCount = kept;
+        if (matches == null) {
+          matches = new int[8];
+        } else if (2 * matchCount + 2 > matches.length) {
+          matches = Arrays.copyOf(matches, matches.length * 2);
+        }
+        matches[2 * matchCount] = start;
+        matches[2 * matchCount + 1] = i;
+        matchCount++;
+        break;
+      }
+    }
+    if (matchCount == 0) {
+      return content;
+    }
+    StringBuilder censored = new StringBuilder(content.length() + matchCount * replacement.length());
+    int position = 0;
+    for (int m = 0; m < matchCount; m++) {
+      censored.append(content, position, matches[2 * m]).append(replacement);
+      position = matches[2 * m + 1] + 1;
+    }
+    return censored.append(content, position, content.length()).toString();
+  }
+
+  public int getTermCount() {
+    return termCount;
+  }
+
+  private int next(int node, char c) {
+    while (true) {
+      int target = transition(node, c);
+      if (target >= 0) {
+        return target;
+      }
+      if (node == ROOT) {
+        return ROOT;
+      }
+      node = failure[node];
+    }
+  }
+
+  private void putTransition(int node, char c, int target) {
+    long key = key(node, c);
+    int mask = transitionKeys.length - 1;
+    int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+    while (transitionKeys[slot] != -1L) {
+      slot = (slot + 1) & mask;
+    }
+    transitionKeys[slot] = key;
+    transitionTargets[slot] = target;
+  }
+
+  private int transition(int node, char c) {
+    long key = key(node, c);
+    int mask = transitionKeys.length - 1;
+    int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+    while (true) {
+      long candidate = transitionKeys[slot];
+      if (candidate == key) {
+        return transitionTargets[slot];
+      }
+      if (candidate == -1L) {
+        return -1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+}
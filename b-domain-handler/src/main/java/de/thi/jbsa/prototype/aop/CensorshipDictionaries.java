@@ -0,0 +1,118 @@
+package de.thi.jbsa.prototype.aop;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Named dictionaries of not allowed terms, each compiled into an {@link AhoCorasickCensor}.
+ * <p>
+ * The terms of a dictionary are read from {@code <dictionary-location>/<name>.txt} (one term per line, lines starting with
+ * {@code #} are comments) and from the comma separated property {@code studychat.censorship.terms.<name>}. The files are
+ * checked periodically and a changed dictionary is recompiled and swapped in without blocking the censoring threads.
+ */
+@Component
+@Slf4j
+public class CensorshipDictionaries {
+
+  static final String REPLACEMENT = "<not allowed term>";
+
+  private static class Dictionary {
+
+    private final AhoCorasickCensor censor;
+
+    private final long lastModified;
+
+    private Dictionary(AhoCorasickCensor censor, long lastModified) {
+      this.censor = censor;
+      this.lastModified = lastModified;
+    }
+  }
+
+  private final Map<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+
+  private final String dictionaryLocation;
+
+  private final Environment environment;
+
+  private final ResourceLoader resourceLoader;
+
+  public CensorshipDictionaries(
+    @Value("${studychat.censorship.dictionary-location:classpath:censorship/}") String dictionaryLocation,
+    Environment environment,
+    ResourceLoader resourceLoader) {
+    this.dictionaryLocation = dictionaryLocation.endsWith("/") ? dictionaryLocation : dictionaryLocation + "/";
+    this.environment = environment;
+    this.resourceLoader = resourceLoader;
+  }
+
+  private static long lastModified(Resource resource) {
+    try {
+      return resource.exists() ? resource.lastModified() : -1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  public AhoCorasickCensor get(String name) {
+    return dictionaries.computeIfAbsent(name, this::load).censor;
+  }
+
+  private Dictionary load(String name) {
+    Resource resource = resourceLoader.getResource(dictionaryLocation + name + ".txt");
+    List<String> terms = new ArrayList<>();
+    if (resource.exists()) {
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (!line.isEmpty() && !line.startsWith("#")) {
+            terms.add(line);
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Censorship dictionary cannot be read: " + resource, e);
+      }
+    }
+    String configuredTerms = environment.getProperty("studychat.censorship.terms." + name);
+    if (configuredTerms != null) {
+      Arrays.stream(configuredTerms.split(","))
+            .map(String::trim)
+            .filter(term -> !term.isEmpty())
+            .forEach(terms::add);
+    }
+    if (!resource.exists() && configuredTerms == null) {
+      throw new IllegalArgumentException("Censorship dictionary doesn't exist: " + name);
+    }
+    AhoCorasickCensor censor = new AhoCorasickCensor(terms, REPLACEMENT);
+    log.info("Loaded censorship dictionary {} with {} terms", name, censor.getTermCount());
+    return new Dictionary(censor, lastModified(resource));
+  }
+
+  @Scheduled(fixedDelayString = "${studychat.censorship.reload-interval-ms:30000}")
+  public void reloadChanged() {
+    dictionaries.forEach((name, dictionary) -> {
+      long lastModified = lastModified(resourceLoader.getResource(dictionaryLocation + name + ".txt"));
+      if (lastModified != dictionary.lastModified) {
+        try {
+          dictionaries.put(name, load(name));
+        } catch (RuntimeException e) {
+          log.error("Reloading censorship dictionary {} failed, keeping the previous one", name, e);
+        }
+      }
+    });
+  }
+}
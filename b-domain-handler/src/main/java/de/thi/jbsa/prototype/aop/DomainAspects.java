@@ -6,7 +6,6 @@
 
 package de.thi.jbsa.prototype.aop;
 
-import java.util.stream.Stream;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.springframework.stereotype.Component;
@@ -21,16 +20,14 @@ import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
 @Component
 public class DomainAspects {
 
-  private String calculateCensoredContent(String content, String term) {
-    if (content == null) {
-      return null;
-    }
-    return content.replace(term, "<not allowed term>");
+  private final CensorshipDictionaries censorshipDictionaries;
+
+  public DomainAspects(CensorshipDictionaries censorshipDictionaries) {
+    this.censorshipDictionaries = censorshipDictionaries;
   }
 
-  @Before("@annotation(de.thi.jbsa.prototype.aop.Censored) && args(cmd,..)")
-  public void censoredMethods(PostMessageCmd cmd) {
-    Stream.of("JBSA", "jbsa", "JbSA")
-          .forEach(term -> cmd.setContent(calculateCensoredContent(cmd.getContent(), term)));
+  @Before("@annotation(censored) && args(cmd,..)")
+  public void censoredMethods(Censored censored, PostMessageCmd cmd) {
+    cmd.setContent(censorshipDictionaries.get(censored.value()).censor(cmd.getContent()));
   }
 }
@@ -23,7 +23,11 @@ public class CommandConsumer {
     this.messageProcessorService = messageProcessorService;
   }
 
-  @JmsListener(destination = JmsConfig.COMMAND_QUEUE_NAME)
+  /**
+   * The commands are consumed concurrently. The write-api sets the user as JMSXGroupID, so the broker hands all commands
+   * of a user to the same consumer and they are still processed one after the other.
+   */
+  @JmsListener(destination = JmsConfig.COMMAND_QUEUE_NAME, concurrency = "${studychat.cmd.concurrency:4}")
   public void listener(Cmd cmd) {
     log.info("Command received " + cmd);
     if (cmd instanceof PostMessageCmd) {
@@ -1,5 +1,7 @@
 package de.thi.jbsa.prototype.model;
 
+import java.util.Date;
+import java.util.UUID;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -7,9 +9,9 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.validation.constraints.NotNull;
-
-import de.thi.jbsa.prototype.model.model.Message;
+import org.hibernate.annotations.Type;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,7 +26,8 @@ import lombok.NoArgsConstructor;
 public class EventEntity {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_entity_seq")
+  @SequenceGenerator(name = "event_entity_seq", sequenceName = "event_entity_seq", allocationSize = 50)
   @Column
   private Long id;
 
@@ -34,4 +37,31 @@ public class EventEntity {
   @Enumerated
   @NotNull
   private EventName eventName;
+
+  @Column(name = "event_uuid")
+  @Type(type = "uuid-char")
+  private UUID eventUuid;
+
+  /**
+   * User whose command caused the event
+   */
+  @Column(name = "user_id")
+  private String userId;
+
+  /**
+   * Cmd-UUID of a posted message, the message UUID of a mention or the UUID of the repeated message
+   */
+  @Column(name = "causation_uuid")
+  @Type(type = "uuid-char")
+  private UUID causationUuid;
+
+  /**
+   * UUID of the first message of a repeat chain
+   */
+  @Column(name = "original_uuid")
+  @Type(type = "uuid-char")
+  private UUID originalUuid;
+
+  @Column
+  private Date created;
 }
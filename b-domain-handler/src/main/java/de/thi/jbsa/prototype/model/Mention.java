@@ -0,0 +1,27 @@
+package de.thi.jbsa.prototype.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A user mentioned in a message, with the offsets of every {@code @user} occurrence in the content
+ */
+@Getter
+@ToString
+public class Mention {
+
+  private final List<Integer> offsets = new ArrayList<>(1);
+
+  private final String userId;
+
+  public Mention(String userId, int offset) {
+    this.userId = userId;
+    offsets.add(offset);
+  }
+
+  public void addOffset(int offset) {
+    offsets.add(offset);
+  }
+}
@@ -0,0 +1,43 @@
+package de.thi.jbsa.prototype.model;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An event which is stored, but not yet sent to the event queue. Written in the same transaction as the event itself.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "event_outbox")
+public class OutboxEntry {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "event_outbox_seq")
+  @SequenceGenerator(name = "event_outbox_seq", sequenceName = "event_outbox_seq", allocationSize = 50)
+  @Column
+  private Long id;
+
+  @Column(name = "event_id")
+  @NotNull
+  private Long eventId;
+
+  /**
+   * Events of the same stream are sent in the order of their outbox ids, currently the stream is the user
+   */
+  @Column(name = "stream_key")
+  private String streamKey;
+
+  @Column
+  @NotNull
+  private Date created;
+}
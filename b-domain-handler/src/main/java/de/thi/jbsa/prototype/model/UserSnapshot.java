@@ -0,0 +1,46 @@
+package de.thi.jbsa.prototype.model;
+
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latest {@link UserState} of a user, so loading the state only needs the events after it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "user_snapshot")
+public class UserSnapshot {
+
+  @Id
+  @Column(name = "user_id")
+  private String userId;
+
+  /**
+   * Id of the last event contained in the snapshot
+   */
+  @Column(name = "last_event_id")
+  @NotNull
+  private Long lastEventId;
+
+  @Column
+  @NotNull
+  private Long version;
+
+  /**
+   * The {@link UserState} as JSON
+   */
+  @Column
+  @NotNull
+  private String state;
+
+  @Column
+  @NotNull
+  private Date created;
+}
@@ -0,0 +1,69 @@
+package de.thi.jbsa.prototype.model;
+
+import java.util.UUID;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+/**
+ * Write-side aggregate of a single user, as far as the duplicate detection needs it.
+ * Instances are immutable, every successful append produces a new state. Stored as JSON in the {@link UserSnapshot}s.
+ */
+@Value
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true)
+public class UserState {
+
+  private static final UserState EMPTY = new UserState(null, null, 0, null, 0, null);
+
+  /**
+   * Content of the last {@link de.thi.jbsa.prototype.model.event.MessagePostedEvent} of the user
+   */
+  String lastContent;
+
+  /**
+   * UUID of the last {@link de.thi.jbsa.prototype.model.event.MessagePostedEvent} of the user
+   */
+  UUID lastEventUuid;
+
+  /**
+   * How many times the last content was posted in a row. 1 if it wasn't repeated (yet)
+   */
+  int repeatCount;
+
+  /**
+   * UUID of the first message of the current repeat chain
+   */
+  UUID originalUuid;
+
+  /**
+   * Number of messages posted by the user
+   */
+  long version;
+
+  /**
+   * Entity id of the last message, later events of the user aren't contained in this state
+   */
+  @With
+  Long lastEventId;
+
+  public static UserState empty() {
+    return EMPTY;
+  }
+
+  public boolean isRepeatedBy(String content) {
+    return lastContent != null && lastContent.equals(content);
+  }
+
+  /**
+   * @return the state after the given message of the user, either a repetition or the start of a new chain
+   */
+  public UserState next(String content, UUID eventUuid, Long eventId) {
+    if (isRepeatedBy(content)) {
+      return new UserState(lastContent, eventUuid, repeatCount + 1, originalUuid, version + 1, eventId);
+    }
+    return new UserState(content, eventUuid, 1, eventUuid, version + 1, eventId);
+  }
+}
@@ -1,6 +1,7 @@
 package de.thi.jbsa.prototype.repository;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.UUID;
 import org.springframework.data.repository.CrudRepository;
 import de.thi.jbsa.prototype.model.EventEntity;
 import de.thi.jbsa.prototype.model.EventName;
@@ -10,5 +11,14 @@ import de.thi.jbsa.prototype.model.EventName;
  */
 public interface EventRepository
   extends CrudRepository<EventEntity, Long> {
-  Optional<EventEntity> findFirstByEventNameAndValueContainingOrderByIdDesc(EventName eventname, String containedInValue);
+
+  /**
+   * Uses the index on (causation_uuid, eventname, id)
+   */
+  boolean existsByEventNameAndCausationUuid(EventName eventName, UUID causationUuid);
+
+  /**
+   * Uses the index on (user_id, eventname, id)
+   */
+  List<EventEntity> findAllByUserIdAndEventNameAndIdGreaterThanOrderByIdAsc(String userId, EventName eventName, Long id);
 }
@@ -0,0 +1,29 @@
+package de.thi.jbsa.prototype.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import de.thi.jbsa.prototype.model.OutboxEntry;
+
+public interface OutboxRepository
+  extends CrudRepository<OutboxEntry, Long> {
+
+  /**
+   * The entries are locked, so only one publisher at a time sends them
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  List<OutboxEntry> findAllByOrderByIdAsc(Pageable pageable);
+
+  Optional<OutboxEntry> findFirstByOrderByIdAsc();
+
+  @Modifying
+  @Query("delete from event_outbox o where o.id in :ids")
+  void deleteByIds(@Param("ids") Collection<Long> ids);
+}
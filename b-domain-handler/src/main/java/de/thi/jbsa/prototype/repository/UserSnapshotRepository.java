@@ -0,0 +1,8 @@
+package de.thi.jbsa.prototype.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import de.thi.jbsa.prototype.model.UserSnapshot;
+
+public interface UserSnapshotRepository
+  extends CrudRepository<UserSnapshot, String> {
+}
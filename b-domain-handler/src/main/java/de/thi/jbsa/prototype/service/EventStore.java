@@ -0,0 +1,142 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thi.jbsa.prototype.model.EventEntity;
+import de.thi.jbsa.prototype.model.EventName;
+import de.thi.jbsa.prototype.model.OutboxEntry;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.repository.EventRepository;
+import de.thi.jbsa.prototype.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only access to the event-source db.
+ */
+@Service
+@Slf4j
+public class EventStore {
+
+  private final EventRepository eventRepository;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final OutboxRepository outboxRepository;
+
+  public EventStore(EventRepository eventRepository, OutboxRepository outboxRepository) {
+    this.eventRepository = eventRepository;
+    this.outboxRepository = outboxRepository;
+  }
+
+  /**
+   * Writes all events produced by one command in a single transaction. The ids come from a pooled sequence, so Hibernate
+   * sends the inserts as one JDBC batch. The entity ids are set on the given events afterwards.
+   * <p>
+   * The events to publish are put into the outbox in the same transaction, in the given order. They are sent to the event
+   * queue by the {@link OutboxPublisher} after the commit.
+   */
+  @Transactional
+  public List<EventEntity> append(String userId, List<? extends AbstractEvent> events, List<? extends AbstractEvent> eventsToPublish) {
+    List<EventEntity> entities = new ArrayList<>(events.size());
+    for (AbstractEvent event : events) {
+      entities.add(toEntity(event, userId));
+    }
+    List<EventEntity> savedEntities = new ArrayList<>(events.size());
+    eventRepository.saveAll(entities).forEach(savedEntities::add);
+    for (int i = 0; i < events.size(); i++) {
+      events.get(i).setEntityId(savedEntities.get(i).getId());
+    }
+    Date now = new Date();
+    List<OutboxEntry> outboxEntries = new ArrayList<>(eventsToPublish.size());
+    for (AbstractEvent event : eventsToPublish) {
+      if (event.getEntityId() == null) {
+        throw new IllegalArgumentException("Only appended events can be published: " + event);
+      }
+      outboxEntries.add(new OutboxEntry(null, event.getEntityId(), userId, now));
+    }
+    outboxRepository.saveAll(outboxEntries);
+    log.info("Written {} events to db for user {}, {} of them to publish", savedEntities.size(), userId, outboxEntries.size());
+    return savedEntities;
+  }
+
+  /**
+   * @return the events by their entity id, with the entity id set
+   */
+  public Map<Long, AbstractEvent> findAllById(Collection<Long> ids) {
+    Map<Long, AbstractEvent> events = new HashMap<>();
+    for (EventEntity entity : eventRepository.findAllById(ids)) {
+      AbstractEvent event = fromJson(entity.getValue());
+      event.setEntityId(entity.getId());
+      events.put(entity.getId(), event);
+    }
+    return events;
+  }
+
+  /**
+   * @return the events of the user with an entity id greater than the given one, in the order of their ids, with the entity id
+   * set
+   */
+  public List<AbstractEvent> findAllByUserAfter(EventName eventName, String userId, long afterId) {
+    List<AbstractEvent> events = new ArrayList<>();
+    for (EventEntity entity : eventRepository.findAllByUserIdAndEventNameAndIdGreaterThanOrderByIdAsc(userId, eventName, afterId)) {
+      AbstractEvent event = fromJson(entity.getValue());
+      event.setEntityId(entity.getId());
+      events.add(event);
+    }
+    return events;
+  }
+
+  public boolean existsByCausation(EventName eventName, UUID causationUuid) {
+    return eventRepository.existsByEventNameAndCausationUuid(eventName, causationUuid);
+  }
+
+  public AbstractEvent fromJson(String value) {
+    try {
+      return objectMapper.readValue(value, AbstractEvent.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("BusinessEvent cannot be deserialized: " + value, e);
+    }
+  }
+
+  private EventEntity toEntity(AbstractEvent event, String userId) {
+    EventEntity entity = new EventEntity();
+    String json = toJson(event);
+    entity.setValue(json);
+    entity.setEventUuid(event.getUuid());
+    entity.setUserId(userId);
+    entity.setCreated(new Date());
+    if (event instanceof MessagePostedEvent) {
+      entity.setEventName(EventName.MESSAGE_POSTED);
+      entity.setCausationUuid(((MessagePostedEvent) event).getCmdUuid());
+    } else if (event instanceof MentionEvent) {
+      entity.setEventName(EventName.MENTION);
+      entity.setCausationUuid(((MentionEvent) event).getCausationUuid());
+    } else if (event instanceof MessageRepeatedEvent) {
+      entity.setEventName(EventName.MESSAGE_REPEATED);
+      entity.setCausationUuid(((MessageRepeatedEvent) event).getCurrentMessageEventUUID());
+      entity.setOriginalUuid(((MessageRepeatedEvent) event).getOriginalMessageUUID());
+    }
+    log.debug("Writing event... : " + json);
+    return entity;
+  }
+
+  private String toJson(de.thi.jbsa.prototype.model.event.Event event) {
+    try {
+      return objectMapper.writeValueAsString(event);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("BusinessEvent cannot be serialized: " + event, e);
+    }
+  }
+}
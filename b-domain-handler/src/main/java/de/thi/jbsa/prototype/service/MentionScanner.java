@@ -0,0 +1,67 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.model.Mention;
+
+/**
+ * Finds {@code @user} mentions in a message in a single pass over the content.
+ * <p>
+ * A mention starts with {@code @} at the beginning of the content or after a whitespace, followed by at least one
+ * letter, digit, {@code _} or {@code -}. Repeated mentions of the same user are reported once, with all offsets.
+ * Characters are only compared, the user id is the only string allocated per mentioned user.
+ */
+@Component
+public class MentionScanner {
+
+  private static boolean isUserIdChar(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
+  }
+
+  private static boolean isWhitespace(char c) {
+    // same as \s in java.util.regex
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  public List<Mention> scan(String content) {
+    if (content == null) {
+      return Collections.emptyList();
+    }
+    List<Mention> mentions = null;
+    int length = content.length();
+    int i = 0;
+    while (i < length) {
+      if (content.charAt(i) != '@' || i > 0 && !isWhitespace(content.charAt(i - 1))) {
+        i++;
+        continue;
+      }
+      int start = i + 1;
+      int end = start;
+      while (end < length && isUserIdChar(content.charAt(end))) {
+        end++;
+      }
+      if (end > start) {
+        if (mentions == null) {
+          mentions = new ArrayList<>(2);
+        }
+        addMention(mentions, content, start, end);
+      }
+      i = Math.max(end, i + 1);
+    }
+    return mentions == null ? Collections.emptyList() : mentions;
+  }
+
+  private void addMention(List<Mention> mentions, String content, int start, int end) {
+    int userIdLength = end - start;
+    for (Mention mention : mentions) {
+      String userId = mention.getUserId();
+      if (userId.length() == userIdLength && content.regionMatches(start, userId, 0, userIdLength)) {
+        mention.addOffset(start - 1);
+        return;
+      }
+    }
+    mentions.add(new Mention(content.substring(start, end), start - 1));
+  }
+}
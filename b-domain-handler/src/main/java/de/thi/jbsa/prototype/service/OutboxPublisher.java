@@ -0,0 +1,121 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import de.thi.jbsa.prototype.model.OutboxEntry;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.repository.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends the committed events of the outbox to the event queue.
+ * <p>
+ * The entries are drained in batches in the order of their ids, each batch is sent in one transacted JMS session and removed
+ * from the outbox afterwards. The stream key is set as JMSXGroupID, so the broker also keeps the order per stream for
+ * concurrent consumers. A crash between the JMS commit and the removal sends the batch again (at least once).
+ */
+@Component
+@Slf4j
+public class OutboxPublisher {
+
+  private static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
+  private final int batchSize;
+
+  private final Queue eventQueue;
+
+  private final EventStore eventStore;
+
+  private final JmsTemplate jmsTemplate;
+
+  /**
+   * Age of the oldest unpublished event in ms, 0 if everything is published
+   */
+  private final AtomicLong lag = new AtomicLong();
+
+  private final OutboxRepository outboxRepository;
+
+  private final Counter publishedCounter;
+
+  private final TransactionTemplate transactionTemplate;
+
+  public OutboxPublisher(
+    @Qualifier("eventQueue") Queue eventQueue,
+    JmsTemplate jmsTemplate,
+    EventStore eventStore,
+    OutboxRepository outboxRepository,
+    PlatformTransactionManager transactionManager,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.outbox.batch-size:100}") int batchSize) {
+    this.eventQueue = eventQueue;
+    this.eventStore = eventStore;
+    this.outboxRepository = outboxRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = batchSize;
+    // same connection and converter as the default template, but all sends of a batch are committed together
+    this.jmsTemplate = new JmsTemplate(Objects.requireNonNull(jmsTemplate.getConnectionFactory()));
+    this.jmsTemplate.setMessageConverter(jmsTemplate.getMessageConverter());
+    this.jmsTemplate.setSessionTransacted(true);
+    this.publishedCounter = meterRegistry.counter("studychat.outbox.published");
+    meterRegistry.gauge("studychat.outbox.lag", lag);
+  }
+
+  @Scheduled(fixedDelayString = "${studychat.outbox.poll-interval-ms:50}")
+  public void publishPending() {
+    int published;
+    do {
+      Integer publishedInBatch = transactionTemplate.execute(status -> publishBatch());
+      published = publishedInBatch == null ? 0 : publishedInBatch;
+    } while (published == batchSize);
+    lag.set(outboxRepository.findFirstByOrderByIdAsc()
+                            .map(entry -> System.currentTimeMillis() - entry.getCreated().getTime())
+                            .orElse(0L));
+  }
+
+  private int publishBatch() {
+    List<OutboxEntry> entries = outboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize));
+    if (entries.isEmpty()) {
+      return 0;
+    }
+    Map<Long, AbstractEvent> events = eventStore.findAllById(entries.stream().map(OutboxEntry::getEventId).collect(Collectors.toList()));
+    MessageConverter messageConverter = Objects.requireNonNull(jmsTemplate.getMessageConverter());
+    jmsTemplate.execute(session -> {
+      MessageProducer producer = session.createProducer(eventQueue);
+      try {
+        for (OutboxEntry entry : entries) {
+          Message message = messageConverter.toMessage(Objects.requireNonNull(events.get(entry.getEventId())), session);
+          if (entry.getStreamKey() != null) {
+            message.setStringProperty(GROUP_ID_PROPERTY, entry.getStreamKey());
+          }
+          producer.send(message);
+        }
+      } finally {
+        JmsUtils.closeMessageProducer(producer);
+      }
+      JmsUtils.commitIfNecessary(session);
+      return null;
+    }, true);
+    outboxRepository.deleteByIds(entries.stream().map(OutboxEntry::getId).collect(Collectors.toList()));
+    publishedCounter.increment(entries.size());
+    log.info("Sent {} events to queue", entries.size());
+    return entries.size();
+  }
+}
@@ -0,0 +1,112 @@
+package de.thi.jbsa.prototype.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thi.jbsa.prototype.model.EventName;
+import de.thi.jbsa.prototype.model.UserSnapshot;
+import de.thi.jbsa.prototype.model.UserState;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.repository.UserSnapshotRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads the {@link UserState} of a user from the latest snapshot plus the messages posted after it, and takes a new snapshot
+ * every {@code interval} messages of the user.
+ * <p>
+ * Only the {@link MessagePostedEvent}s are replayed, the repeat chain follows from their contents. Snapshots are only an
+ * optimization: a failed write is logged and the state is rebuilt from the events as before.
+ */
+@Service
+@Slf4j
+public class UserSnapshotService {
+
+  private final EventStore eventStore;
+
+  private final long interval;
+
+  private final Timer loadTimer;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final DistributionSummary replayedEvents;
+
+  private final UserSnapshotRepository snapshotRepository;
+
+  private final DistributionSummary snapshotSize;
+
+  public UserSnapshotService(
+    EventStore eventStore,
+    UserSnapshotRepository snapshotRepository,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.snapshot.interval:100}") long interval) {
+    this.eventStore = eventStore;
+    this.snapshotRepository = snapshotRepository;
+    this.interval = interval;
+    this.loadTimer = meterRegistry.timer("studychat.snapshot.load");
+    this.replayedEvents = meterRegistry.summary("studychat.snapshot.replayed-events");
+    this.snapshotSize = DistributionSummary.builder("studychat.snapshot.size")
+                                           .baseUnit("bytes")
+                                           .register(meterRegistry);
+  }
+
+  private UserState fromJson(UserSnapshot snapshot) {
+    try {
+      return objectMapper.readValue(snapshot.getState(), UserState.class);
+    } catch (JsonProcessingException e) {
+      log.warn("Snapshot of user {} cannot be read, replaying all events", snapshot.getUserId(), e);
+      return UserState.empty();
+    }
+  }
+
+  public UserState load(String userId) {
+    return loadTimer.record(() -> {
+      UserState state = snapshotRepository.findById(userId)
+                                          .map(this::fromJson)
+                                          .orElse(UserState.empty());
+      long afterId = Optional.ofNullable(state.getLastEventId()).orElse(-1L);
+      List<AbstractEvent> events = eventStore.findAllByUserAfter(EventName.MESSAGE_POSTED, userId, afterId);
+      for (AbstractEvent event : events) {
+        MessagePostedEvent postedEvent = (MessagePostedEvent) event;
+        state = state.next(postedEvent.getContent(), postedEvent.getUuid(), postedEvent.getEntityId());
+      }
+      replayedEvents.record(events.size());
+      log.debug("Loaded state of user {}, {} events after the snapshot", userId, events.size());
+      if (events.size() >= interval) {
+        // e.g. the first load of a user from the time before the snapshots
+        save(userId, state);
+      }
+      return state;
+    });
+  }
+
+  private void save(String userId, UserState state) {
+    try {
+      String json = objectMapper.writeValueAsString(state);
+      snapshotRepository.save(new UserSnapshot(userId, state.getLastEventId(), state.getVersion(), json, new Date()));
+      snapshotSize.record(json.getBytes(StandardCharsets.UTF_8).length);
+      log.debug("Saved snapshot of user {} at version {}", userId, state.getVersion());
+    } catch (JsonProcessingException | DataAccessException e) {
+      log.warn("Snapshot of user {} not saved", userId, e);
+    }
+  }
+
+  /**
+   * Called with the new state after every committed message of the user.
+   */
+  public void stateChanged(String userId, UserState state) {
+    if (state.getLastEventId() != null && state.getVersion() % interval == 0) {
+      save(userId, state);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.model.UserState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded in-memory cache of the write-side {@link UserState} per user.
+ * <p>
+ * The least recently used user is evicted when the cache is full, users without activity for longer than the idle timeout
+ * are evicted lazily on the next access of the cache. A miss is loaded through the given loader, usually from the event store.
+ */
+@Component
+@Slf4j
+public class UserStateCache {
+
+  private static class Entry {
+
+    private final UserState state;
+
+    private final long lastAccess;
+
+    private Entry(UserState state, long lastAccess) {
+      this.state = state;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+
+  private final long idleTimeoutMillis;
+
+  private final int maxSize;
+
+  public UserStateCache(
+    @Value("${studychat.user-state-cache.max-size:10000}") int maxSize,
+    @Value("${studychat.user-state-cache.idle-timeout-ms:1800000}") long idleTimeoutMillis) {
+    this.maxSize = maxSize;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  private void evict(long now) {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      if (entries.size() <= maxSize && now - eldest.lastAccess < idleTimeoutMillis) {
+        // access order: everything after the eldest entry was used even more recently
+        return;
+      }
+      iterator.remove();
+    }
+  }
+
+  public UserState get(String userId, Function<String, UserState> loader) {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      evict(now);
+      Entry entry = entries.get(userId);
+      if (entry != null) {
+        entries.put(userId, new Entry(entry.state, now));
+        return entry.state;
+      }
+    }
+    log.debug("No cached state for user {}, loading it", userId);
+    UserState state = loader.apply(userId);
+    put(userId, state);
+    return state;
+  }
+
+  public void invalidate(String userId) {
+    synchronized (entries) {
+      entries.remove(userId);
+    }
+  }
+
+  public void put(String userId, UserState state) {
+    long now = System.currentTimeMillis();
+    synchronized (entries) {
+      entries.put(userId, new Entry(state, now));
+      evict(now);
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package de.thi.jbsa.prototype.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickCensorTest {
+
+  @Test
+  void censorIgnoresCase() {
+    AhoCorasickCensor censor = new AhoCorasickCensor(Collections.singletonList("JBSA"), "***");
+
+    assertEquals("*** is *** and ***", censor.censor("JBSA is jbsa and JbSa"));
+  }
+
+  @Test
+  void censorKeepsContentWithoutMatch() {
+    String content = "nothing to see here";
+    AhoCorasickCensor censor = new AhoCorasickCensor(Arrays.asList("foo", "bar"), "***");
+
+    assertSame(content, censor.censor(content));
+  }
+
+  @Test
+  void censorPrefersLeftmostLongestMatch() {
+    AhoCorasickCensor censor = new AhoCorasickCensor(Arrays.asList("b", "abc", "cde", "he", "she", "hers"), "*");
+
+    assertEquals("* * *rs", censor.censor("abc cde shers"));
+  }
+
+  @Test
+  void censorFallsBackToShorterTermAfterOverlap() {
+    AhoCorasickCensor censor = new AhoCorasickCensor(Arrays.asList("abc", "bcde", "de"), "#");
+
+    assertEquals("##", censor.censor("abcde"));
+  }
+
+  @Test
+  void censorWithMatchesAtBothEnds() {
+    AhoCorasickCensor censor = new AhoCorasickCensor(Arrays.asList("ab", "yz"), "-");
+
+    assertEquals("- to -", censor.censor("ab to yz"));
+  }
+}
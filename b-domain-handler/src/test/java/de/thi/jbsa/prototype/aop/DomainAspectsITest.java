@@ -5,10 +5,10 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import java.util.Objects;
 import javax.jms.Connection;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.Queue;
 import javax.jms.Session;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
@@ -53,9 +53,9 @@ class DomainAspectsITest {
     // here we have a timeout, because we have to wait for the service to finish processing and the event to arrive on the queue
     // The timeout should be as low as possible to avoid waiting too long for a failure,
     // but high enough to minimize the risk of false positives (search for "flaky tests").
-    ActiveMQObjectMessage receivedMessage = (ActiveMQObjectMessage) consumer.receive(1000);
+    Message receivedMessage = consumer.receive(1000);
     assertNotNull(receivedMessage);
-    AbstractEvent eventFromQueue = (AbstractEvent) receivedMessage.getObject();
+    AbstractEvent eventFromQueue = (AbstractEvent) Objects.requireNonNull(jmsTemplate.getMessageConverter()).fromMessage(receivedMessage);
 
     assertThat(eventFromQueue, Matchers.isA(MessagePostedEvent.class));
     Assert.assertEquals("I'm a <not allowed term> student!", ((MessagePostedEvent) eventFromQueue).getContent());
@@ -0,0 +1,39 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import de.thi.jbsa.prototype.model.Mention;
+
+class MentionScannerTest {
+
+  private final MentionScanner mentionScanner = new MentionScanner();
+
+  @Test
+  void scanFindsMentionAtStart() {
+    List<Mention> mentions = mentionScanner.scan("@bernd Hello World!");
+
+    assertEquals(1, mentions.size());
+    assertEquals("bernd", mentions.get(0).getUserId());
+    assertEquals(Collections.singletonList(0), mentions.get(0).getOffsets());
+  }
+
+  @Test
+  void scanIgnoresMailAddressesAndSingleAt() {
+    assertTrue(mentionScanner.scan("mail to timmy@thi.de or @ me").isEmpty());
+  }
+
+  @Test
+  void scanMergesRepeatedMentions() {
+    List<Mention> mentions = mentionScanner.scan("Hi @bernd and @timmy-2, @bernd!");
+
+    assertEquals(2, mentions.size());
+    assertEquals("bernd", mentions.get(0).getUserId());
+    assertEquals(Arrays.asList(3, 24), mentions.get(0).getOffsets());
+    assertEquals("timmy-2", mentions.get(1).getUserId());
+    assertEquals(Collections.singletonList(14), mentions.get(1).getOffsets());
+  }
+}
@@ -4,59 +4,92 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import javax.jms.Queue;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.jms.core.JmsTemplate;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import de.thi.jbsa.prototype.model.EventEntity;
 import de.thi.jbsa.prototype.model.EventName;
+import de.thi.jbsa.prototype.model.OutboxEntry;
+import de.thi.jbsa.prototype.model.UserSnapshot;
 import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
 import de.thi.jbsa.prototype.model.event.AbstractEvent;
 import de.thi.jbsa.prototype.model.event.MentionEvent;
 import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
 import de.thi.jbsa.prototype.repository.EventRepository;
+import de.thi.jbsa.prototype.repository.OutboxRepository;
+import de.thi.jbsa.prototype.repository.UserSnapshotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class MessageProcessorServiceTest {
 
-  private final ArgumentCaptor<AbstractEvent> eventArgumentCaptor = ArgumentCaptor.forClass(AbstractEvent.class);
-
-  private final ArgumentCaptor<EventEntity> eventEntityArgumentCaptor = ArgumentCaptor.forClass(EventEntity.class);
-
   private long entityId = 0;
 
-  @Mock
-  private Queue eventQueue;
-
   @Mock
   private EventRepository eventRepository;
 
-  @Mock
-  private JmsTemplate jmsTemplate;
+  private EventStore eventStore;
 
-  @InjectMocks
   private MessageProcessorService messageProcessorService;
 
   @Mock
-  private ObjectMapper objectMapper;
+  private OutboxRepository outboxRepository;
+
+  private final List<OutboxEntry> outboxEntries = new ArrayList<>();
+
+  @Mock
+  private UserSnapshotRepository userSnapshotRepository;
 
   private long getNewEntityId() {
     return entityId++;
   }
 
+  private List<EventEntity> getSavedEventEntities(int expectedCount) {
+    verify(eventRepository, atLeastOnce()).saveAll(anyIterable());
+    assertEquals(expectedCount, savedEventEntities.size());
+    return savedEventEntities;
+  }
+
+  /**
+   * @return the events which will be sent to the event queue, in the order of the outbox
+   */
+  private List<AbstractEvent> getPublishedEvents(int expectedCount) {
+    assertEquals(expectedCount, outboxEntries.size());
+    List<AbstractEvent> publishedEvents = new ArrayList<>();
+    for (OutboxEntry outboxEntry : outboxEntries) {
+      EventEntity eventEntity = savedEventEntities.stream()
+                                                  .filter(entity -> entity.getId().equals(outboxEntry.getEventId()))
+                                                  .findFirst()
+                                                  .orElseThrow(() -> new AssertionError("Outbox entry without event: " + outboxEntry));
+      AbstractEvent event = eventStore.fromJson(eventEntity.getValue());
+      event.setEntityId(eventEntity.getId());
+      publishedEvents.add(event);
+    }
+    return publishedEvents;
+  }
+
+  private void stubFindAllByUserAfter() {
+    when(eventRepository.findAllByUserIdAndEventNameAndIdGreaterThanOrderByIdAsc(any(), any(), any()))
+      .thenAnswer(invocation -> savedEventEntities.stream()
+                                                  .filter(eventEntity -> eventEntity.getUserId().equals(invocation.getArgument(0)))
+                                                  .filter(eventEntity -> eventEntity.getEventName().equals(invocation.getArgument(1)))
+                                                  .filter(eventEntity -> eventEntity.getId() > (Long) invocation.getArgument(2))
+                                                  .collect(Collectors.toList()));
+  }
+
   @Test
   void postMessage() {
     // given
@@ -66,8 +99,7 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmd);
 
     // then
-    verify(jmsTemplate).convertAndSend(any(Queue.class), eventArgumentCaptor.capture());
-    AbstractEvent extractedEvent = eventArgumentCaptor.getValue();
+    AbstractEvent extractedEvent = getPublishedEvents(1).get(0);
     assertTrue(extractedEvent instanceof MessagePostedEvent);
     assertEquals(((MessagePostedEvent) extractedEvent).getContent(), postMessageCmd.getContent());
     assertEquals("timmy", ((MessagePostedEvent) extractedEvent).getUserId());
@@ -83,8 +115,9 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmd);
 
     // then
-    verify(eventRepository, times(2)).save(eventEntityArgumentCaptor.capture());
-    List<EventEntity> eventsSavedInDb = eventEntityArgumentCaptor.getAllValues();
+    // all events of one command are written in one batch
+    verify(eventRepository, times(1)).saveAll(anyIterable());
+    List<EventEntity> eventsSavedInDb = getSavedEventEntities(2);
     EventEntity mentionEventEntity = eventsSavedInDb.get(0);
     EventEntity messagePostedEventEntity = eventsSavedInDb.get(1);
     assertEquals(EventName.MENTION, mentionEventEntity.getEventName());
@@ -101,8 +134,7 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmd);
 
     // then
-    verify(jmsTemplate, times(2)).convertAndSend(any(Queue.class), eventArgumentCaptor.capture());
-    List<AbstractEvent> receivedEvents = eventArgumentCaptor.getAllValues();
+    List<AbstractEvent> receivedEvents = getPublishedEvents(2);
     MentionEvent receivedMentionEvent = (MentionEvent) receivedEvents.get(0);
     MessagePostedEvent receivedMessagePostedEvent = (MessagePostedEvent) receivedEvents.get(1);
     assertEquals("bernd", receivedMentionEvent.getMentionedUser());
@@ -126,13 +158,11 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmd);
 
     // then
-    verify(eventRepository, times(2)).save(eventEntityArgumentCaptor.capture());
-    List<EventEntity> eventsSavedInDb = eventEntityArgumentCaptor.getAllValues();
+    List<EventEntity> eventsSavedInDb = getSavedEventEntities(2);
     EventEntity mentionEventEntity = eventsSavedInDb.get(0);
     EventEntity messagePostedEventEntity = eventsSavedInDb.get(1);
 
-    verify(jmsTemplate, times(2)).convertAndSend(any(Queue.class), eventArgumentCaptor.capture());
-    List<AbstractEvent> receivedEvents = eventArgumentCaptor.getAllValues();
+    List<AbstractEvent> receivedEvents = getPublishedEvents(2);
     MentionEvent receivedMentionEvent = (MentionEvent) receivedEvents.get(0);
     MessagePostedEvent receivedMessagePostedEvent = (MessagePostedEvent) receivedEvents.get(1);
 
@@ -142,13 +172,7 @@ class MessageProcessorServiceTest {
 
   @Test
   void postMessageDuplicate() {
-    when(eventRepository.findFirstByEventNameAndValueContainingOrderByIdDesc(any(), any()))
-      .thenAnswer(invocation -> {
-        // Always return the last saved object of required type
-        return savedEventEntities.stream()
-                                 .filter(eventEntity -> eventEntity.getEventName().equals(invocation.getArgument(0)))
-                                 .reduce((first, second) -> second);
-      });
+    stubFindAllByUserAfter();
 
     // given
     PostMessageCmd postMessageCmd = new PostMessageCmd("timmy", "Hello World!");
@@ -159,8 +183,7 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmdDup);
 
     // then
-    verify(eventRepository, times(3)).save(eventEntityArgumentCaptor.capture());
-    List<EventEntity> eventsSavedInDb = eventEntityArgumentCaptor.getAllValues();
+    List<EventEntity> eventsSavedInDb = getSavedEventEntities(3);
     EventEntity messagePostedEventEntity = eventsSavedInDb.get(0);
     EventEntity dupMessagePostedEventEntity = eventsSavedInDb.get(1);
     EventEntity messageRepeatedEvent = eventsSavedInDb.get(2);
@@ -169,17 +192,16 @@ class MessageProcessorServiceTest {
     assertEquals(EventName.MESSAGE_POSTED, dupMessagePostedEventEntity.getEventName());
     assertTrue(messagePostedEventEntity.getValue().contains("Hello World!"));
     assertTrue(messageRepeatedEvent.getValue().contains("occurCount\":2"));
+    // the duplicate message itself isn't published, only the repetition
+    List<AbstractEvent> publishedEvents = getPublishedEvents(2);
+    assertTrue(publishedEvents.get(0) instanceof MessagePostedEvent);
+    assertTrue(publishedEvents.get(1) instanceof MessageRepeatedEvent);
+    assertEquals(messageRepeatedEvent.getId(), publishedEvents.get(1).getEntityId());
   }
 
   @Test
   void postMessageTriple() {
-    when(eventRepository.findFirstByEventNameAndValueContainingOrderByIdDesc(any(), any()))
-      .thenAnswer(invocation -> {
-        // Always return the last saved object of required type
-        return savedEventEntities.stream()
-                                 .filter(eventEntity -> eventEntity.getEventName().equals(invocation.getArgument(0)))
-                                 .reduce((first, second) -> second);
-      });
+    stubFindAllByUserAfter();
 
     // given
     PostMessageCmd postMessageCmd = new PostMessageCmd("timmy", "Hello World!");
@@ -192,8 +214,7 @@ class MessageProcessorServiceTest {
     messageProcessorService.postMessage(postMessageCmdDup);
 
     // then
-    verify(eventRepository, times(5)).save(eventEntityArgumentCaptor.capture());
-    List<EventEntity> eventsSavedInDb = eventEntityArgumentCaptor.getAllValues();
+    List<EventEntity> eventsSavedInDb = getSavedEventEntities(5);
     EventEntity messagePostedEventEntity = eventsSavedInDb.get(0);
     EventEntity dupMessagePostedEventEntity = eventsSavedInDb.get(1);
     EventEntity messageRepeatedEvent = eventsSavedInDb.get(2);
@@ -204,15 +225,110 @@ class MessageProcessorServiceTest {
     assertTrue(messageRepeatedEvent.getValue().contains("occurCount\":2"));
   }
 
+  @Test
+  void postMessageDuplicateQueriesDbOnlyOnCacheMiss() {
+
+    // given
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+
+    // when
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+
+    // then
+    verify(eventRepository, times(1)).findAllByUserIdAndEventNameAndIdGreaterThanOrderByIdAsc(any(), any(), any());
+    EventEntity lastMessageRepeatedEvent = getSavedEventEntities(5).get(4);
+    assertEquals(EventName.MESSAGE_REPEATED, lastMessageRepeatedEvent.getEventName());
+    assertTrue(lastMessageRepeatedEvent.getValue().contains("occurCount\":3"));
+  }
+
+  @Test
+  void postMessageDropsAlreadyProcessedCommand() {
+    // given
+    PostMessageCmd postMessageCmd = new PostMessageCmd("timmy", "Hello World!");
+    messageProcessorService.postMessage(postMessageCmd);
+    when(eventRepository.existsByEventNameAndCausationUuid(EventName.MESSAGE_POSTED, postMessageCmd.getUuid())).thenReturn(true);
+
+    // when
+    messageProcessorService.postMessage(postMessageCmd);
+
+    // then
+    verify(eventRepository, times(1)).saveAll(anyIterable());
+    getPublishedEvents(1);
+  }
+
+  @Test
+  void postMessageTakesSnapshotEveryInterval() {
+    // given
+    messageProcessorService = new MessageProcessorService(eventStore, new MentionScanner(), new UserStateCache(100, 60_000),
+      new UserSnapshotService(eventStore, userSnapshotRepository, new SimpleMeterRegistry(), 2),
+      new SimpleMeterRegistry());
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+
+    // when
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello again!"));
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello again!"));
+
+    // then
+    ArgumentCaptor<UserSnapshot> snapshotCaptor = ArgumentCaptor.forClass(UserSnapshot.class);
+    verify(userSnapshotRepository, times(1)).save(snapshotCaptor.capture());
+    UserSnapshot snapshot = snapshotCaptor.getValue();
+    assertEquals("timmy", snapshot.getUserId());
+    assertEquals(2L, snapshot.getVersion());
+    assertEquals(savedEventEntities.get(1).getId(), snapshot.getLastEventId());
+    assertTrue(snapshot.getState().contains("Hello again!"));
+  }
+
+  @Test
+  void postMessageReplaysOnlyEventsAfterSnapshot() {
+    // given
+    stubFindAllByUserAfter();
+    UserSnapshotService snapshotService = new UserSnapshotService(eventStore, userSnapshotRepository, new SimpleMeterRegistry(), 2);
+    messageProcessorService = new MessageProcessorService(eventStore, new MentionScanner(), new UserStateCache(100, 60_000), snapshotService,
+      new SimpleMeterRegistry());
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+    ArgumentCaptor<UserSnapshot> snapshotCaptor = ArgumentCaptor.forClass(UserSnapshot.class);
+    verify(userSnapshotRepository).save(snapshotCaptor.capture());
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+    when(userSnapshotRepository.findById("timmy")).thenReturn(Optional.of(snapshotCaptor.getValue()));
+    // cold start
+    messageProcessorService = new MessageProcessorService(eventStore, new MentionScanner(), new UserStateCache(100, 60_000), snapshotService,
+      new SimpleMeterRegistry());
+
+    // when
+    messageProcessorService.postMessage(new PostMessageCmd("timmy", "Hello World!"));
+
+    // then
+    verify(eventRepository).findAllByUserIdAndEventNameAndIdGreaterThanOrderByIdAsc("timmy", EventName.MESSAGE_POSTED,
+      snapshotCaptor.getValue().getLastEventId());
+    EventEntity lastMessageRepeatedEvent = savedEventEntities.get(savedEventEntities.size() - 1);
+    assertEquals(EventName.MESSAGE_REPEATED, lastMessageRepeatedEvent.getEventName());
+    assertTrue(lastMessageRepeatedEvent.getValue().contains("occurCount\":4"));
+    assertTrue(lastMessageRepeatedEvent.getValue().contains(savedEventEntities.get(0).getEventUuid().toString()));
+  }
+
   @BeforeEach
   void setUp() {
-    when(eventRepository.save(any(EventEntity.class))).thenAnswer(invocation -> {
-      EventEntity entityToSave = invocation.getArgument(0);
-      entityToSave.setId(getNewEntityId());
-      savedEventEntities.add(entityToSave);
-      return entityToSave;
+    when(eventRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+      Iterable<EventEntity> entitiesToSave = invocation.getArgument(0);
+      entitiesToSave.forEach(entityToSave -> {
+        entityToSave.setId(getNewEntityId());
+        savedEventEntities.add(entityToSave);
+      });
+      return entitiesToSave;
+    });
+    when(outboxRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+      Iterable<OutboxEntry> entriesToSave = invocation.getArgument(0);
+      entriesToSave.forEach(outboxEntries::add);
+      return entriesToSave;
     });
     entityId = 0;
     savedEventEntities.clear();
+    outboxEntries.clear();
+    eventStore = new EventStore(eventRepository, outboxRepository);
+    messageProcessorService = new MessageProcessorService(eventStore, new MentionScanner(), new UserStateCache(100, 60_000),
+      new UserSnapshotService(eventStore, userSnapshotRepository, new SimpleMeterRegistry(), 100),
+      new SimpleMeterRegistry());
   }
 }
@@ -0,0 +1,169 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.persistence.LockModeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import de.thi.jbsa.prototype.model.OutboxEntry;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.repository.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboxPublisherTest {
+
+  private final Map<Long, AbstractEvent> events = new HashMap<>();
+
+  private final Map<AbstractEvent, Message> messages = new HashMap<>();
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private OutboxRepository outboxRepository;
+
+  private MessageProducer producer;
+
+  private OutboxPublisher publisher;
+
+  private Session session;
+
+  private PlatformTransactionManager transactionManager;
+
+  private OutboxEntry entry(long id, long eventId, String streamKey) {
+    AbstractEvent event = new MessagePostedEvent(UUID.randomUUID(), "Message " + eventId, eventId, streamKey);
+    events.put(eventId, event);
+    messages.put(event, mock(Message.class));
+    return new OutboxEntry(id, eventId, streamKey, new Date());
+  }
+
+  private Message message(long eventId) {
+    return messages.get(events.get(eventId));
+  }
+
+  @BeforeEach
+  void setUp()
+    throws JMSException {
+    ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+    Connection connection = mock(Connection.class);
+    session = mock(Session.class);
+    producer = mock(MessageProducer.class);
+    when(connectionFactory.createConnection()).thenReturn(connection);
+    when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+    when(session.getTransacted()).thenReturn(true);
+    when(session.createProducer(any())).thenReturn(producer);
+    MessageConverter messageConverter = mock(MessageConverter.class);
+    when(messageConverter.toMessage(any(), eq(session))).thenAnswer(invocation -> messages.get(invocation.getArgument(0)));
+    JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+    when(jmsTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+    when(jmsTemplate.getMessageConverter()).thenReturn(messageConverter);
+
+    EventStore eventStore = mock(EventStore.class);
+    when(eventStore.findAllById(anyCollection())).thenReturn(events);
+    outboxRepository = mock(OutboxRepository.class);
+    when(outboxRepository.findFirstByOrderByIdAsc()).thenReturn(Optional.empty());
+    transactionManager = mock(PlatformTransactionManager.class);
+    when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    meterRegistry = new SimpleMeterRegistry();
+    publisher = new OutboxPublisher(mock(Queue.class), jmsTemplate, eventStore, outboxRepository, transactionManager, meterRegistry, 2);
+  }
+
+  @Test
+  void publishPendingSendsEntriesInOrderWithStreamKeyAsGroupIdAndDeletesThemAfterCommit()
+    throws JMSException {
+    // given
+    when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class)))
+      .thenReturn(Arrays.asList(entry(1, 11, "timmy"), entry(2, 12, "tommy")), Collections.singletonList(entry(3, 13, "timmy")));
+
+    // when
+    publisher.publishPending();
+
+    // then
+    InOrder inOrder = inOrder(producer, session, outboxRepository);
+    inOrder.verify(producer).send(message(11));
+    inOrder.verify(producer).send(message(12));
+    inOrder.verify(session).commit();
+    inOrder.verify(outboxRepository).deleteByIds(Arrays.asList(1L, 2L));
+    // a full batch is followed by the next one
+    inOrder.verify(producer).send(message(13));
+    inOrder.verify(session).commit();
+    inOrder.verify(outboxRepository).deleteByIds(Collections.singletonList(3L));
+    verify(message(11)).setStringProperty("JMSXGroupID", "timmy");
+    verify(message(12)).setStringProperty("JMSXGroupID", "tommy");
+    assertEquals(3, meterRegistry.counter("studychat.outbox.published").count());
+  }
+
+  @Test
+  void failedSendKeepsTheEntriesInTheOutbox()
+    throws JMSException {
+    // given
+    when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class)))
+      .thenReturn(Arrays.asList(entry(1, 11, "timmy"), entry(2, 12, "timmy")));
+    doThrow(new JMSException("broker is gone")).when(producer).send(message(12));
+
+    // when
+    assertThrows(JmsException.class, publisher::publishPending);
+
+    // then
+    verify(session, never()).commit();
+    verify(outboxRepository, never()).deleteByIds(anyCollection());
+    verify(transactionManager).rollback(any());
+  }
+
+  @Test
+  void lagIsTheAgeOfTheOldestUnpublishedEntry() {
+    // given
+    when(outboxRepository.findAllByOrderByIdAsc(any(Pageable.class))).thenReturn(Collections.emptyList());
+    when(outboxRepository.findFirstByOrderByIdAsc())
+      .thenReturn(Optional.of(new OutboxEntry(1L, 11L, "timmy", new Date(System.currentTimeMillis() - 5000))));
+
+    // when
+    publisher.publishPending();
+
+    // then
+    assertTrue(meterRegistry.get("studychat.outbox.lag").gauge().value() >= 5000);
+  }
+
+  @Test
+  void entriesAreLockedForOnePublisherAtATime()
+    throws NoSuchMethodException {
+    // when
+    Lock lock = OutboxRepository.class.getMethod("findAllByOrderByIdAsc", Pageable.class).getAnnotation(Lock.class);
+
+    // then
+    assertEquals(LockModeType.PESSIMISTIC_WRITE, lock.value());
+  }
+}
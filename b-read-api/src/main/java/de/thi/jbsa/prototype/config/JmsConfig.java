@@ -1,9 +1,20 @@
 package de.thi.jbsa.prototype.config;
 
+import java.io.IOException;
+import javax.jms.ConnectionFactory;
 import javax.jms.Topic;
 import org.apache.activemq.command.ActiveMQTopic;
+import org.apache.activemq.transport.DefaultTransportListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.jms.activemq.ActiveMQConnectionFactoryCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import de.thi.jbsa.prototype.codec.BinaryMessageConverter;
+import de.thi.jbsa.prototype.consumer.EventRingConsumer;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-04-21
@@ -11,8 +22,52 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class JmsConfig {
 
+  public static final String UI_EVENT_TOPIC = "ui-event-topic";
+
   @Bean
   public Topic topic() {
-    return new ActiveMQTopic("ui-event-topic");
+    return new ActiveMQTopic(UI_EVENT_TOPIC);
+  }
+
+  /**
+   * The event ring subscribes to the UI topic, which isn't durable: the events sent while the connection is down are missing
+   */
+  @Bean
+  public ActiveMQConnectionFactoryCustomizer suspendEventRingOnConnectionFailure(EventRingConsumer eventRingConsumer) {
+    return connectionFactory -> connectionFactory.setTransportListener(new DefaultTransportListener() {
+
+      @Override
+      public void onException(IOException error) {
+        eventRingConsumer.connectionInterrupted();
+      }
+
+      @Override
+      public void transportInterupted() {
+        eventRingConsumer.connectionInterrupted();
+      }
+
+      @Override
+      public void transportResumed() {
+        eventRingConsumer.connectionResumed();
+      }
+    });
+  }
+
+  @Bean
+  public MessageConverter messageConverter(@Value("${studychat.jms.codec:binary}") String codec) {
+    return "java".equalsIgnoreCase(codec) ? new SimpleMessageConverter() : new BinaryMessageConverter();
+  }
+
+  /**
+   * Listeners of the UI topic, the default container factory listens to queues
+   */
+  @Bean
+  public DefaultJmsListenerContainerFactory topicListenerFactory(
+    DefaultJmsListenerContainerFactoryConfigurer configurer,
+    ConnectionFactory connectionFactory) {
+    DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+    configurer.configure(factory, connectionFactory);
+    factory.setPubSubDomain(true);
+    return factory;
   }
 }
@@ -0,0 +1,49 @@
+package de.thi.jbsa.prototype.config;
+
+import javax.annotation.PostConstruct;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates the indexes of the message history at startup, an existing index is left as it is.
+ * <p>
+ * The indexes follow the equality, sort, range order: the sender is compared for equality, the entity id is the sort key of
+ * the pages and the creation time is only a range filter, which is checked on the index keys without loading the documents.
+ */
+@Configuration
+@Slf4j
+public class MongoConfig {
+
+  private final MongoTemplate mongoTemplate;
+
+  public MongoConfig(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  /**
+   * Also used for the collection built by a replay
+   */
+  public static void ensureMessageIndexes(IndexOperations indexOperations) {
+    indexOperations.ensureIndex(new Index().named("message_entityId_created")
+                                           .on("message.entityId", Sort.Direction.DESC)
+                                           .on("message.created", Sort.Direction.ASC));
+    indexOperations.ensureIndex(new Index().named("message_sender_entityId_created")
+                                           .on("message.senderUserId", Sort.Direction.ASC)
+                                           .on("message.entityId", Sort.Direction.DESC)
+                                           .on("message.created", Sort.Direction.ASC));
+    // event catch-up of reconnecting clients
+    indexOperations.ensureIndex(new Index().named("updated")
+                                           .on("updated", Sort.Direction.DESC));
+  }
+
+  @PostConstruct
+  public void ensureIndexes() {
+    ensureMessageIndexes(mongoTemplate.indexOps(MessageDoc.class));
+    log.info("Ensured indexes of the message history");
+  }
+}
@@ -0,0 +1,171 @@
+package de.thi.jbsa.prototype.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.service.MessageService;
+import de.thi.jbsa.prototype.service.PositionSequence;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Projects the events in batches, replaces the {@link EventConsumer} if {@code studychat.projection.mode=batch}.
+ * <p>
+ * The events are received in a transacted session until {@code max-size} events are there or {@code max-wait-ms} passed
+ * since the first one. The batch is written with one bulk write and sent to the UI topic in the same session, the commit
+ * acknowledges the batch and releases the UI events together. After a failure the session is rolled back and the broker
+ * delivers the batch again, which is safe because the updates of the read-db are idempotent.
+ * <p>
+ * Redelivered messages are projected one at a time, each in its own transaction. So a message which keeps failing uses up its
+ * redeliveries alone and only this message ends up in the dead letter queue, not the whole batch it came with.
+ */
+@Component
+@ConditionalOnProperty(name = "studychat.projection.mode", havingValue = "batch")
+@Slf4j
+public class BatchEventConsumer {
+
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  private final DistributionSummary batchSize;
+
+  private final Timer batchLatency;
+
+  private final JmsTemplate jmsTemplate;
+
+  private final int maxBatchSize;
+
+  private final long maxWaitMillis;
+
+  private final MessageService messageService;
+
+  private final PositionSequence positionSequence;
+
+  private final Topic topic;
+
+  private volatile boolean running;
+
+  private Thread worker;
+
+  public BatchEventConsumer(
+    MessageService messageService,
+    PositionSequence positionSequence,
+    JmsTemplate jmsTemplate,
+    Topic topic,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.projection.batch.max-size:100}") int maxBatchSize,
+    @Value("${studychat.projection.batch.max-wait-ms:20}") long maxWaitMillis) {
+    this.messageService = messageService;
+    this.positionSequence = positionSequence;
+    this.topic = topic;
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitMillis = maxWaitMillis;
+    // same connection and converter as the default template, but the whole batch is one transaction
+    this.jmsTemplate = new JmsTemplate(Objects.requireNonNull(jmsTemplate.getConnectionFactory()));
+    this.jmsTemplate.setMessageConverter(jmsTemplate.getMessageConverter());
+    this.jmsTemplate.setSessionTransacted(true);
+    this.batchSize = meterRegistry.summary("studychat.projection.batch.size");
+    this.batchLatency = meterRegistry.timer("studychat.projection.batch.latency");
+  }
+
+  private void consume() {
+    MessageConverter messageConverter = Objects.requireNonNull(jmsTemplate.getMessageConverter());
+    while (running) {
+      try {
+        jmsTemplate.execute(session -> {
+          MessageConsumer consumer = session.createConsumer(new ActiveMQQueue(EventConsumer.EVENT_QUEUE_NAME));
+          MessageProducer producer = session.createProducer(topic);
+          try {
+            while (running) {
+              projectBatch(session, consumer, producer, messageConverter);
+            }
+          } finally {
+            JmsUtils.closeMessageProducer(producer);
+            JmsUtils.closeMessageConsumer(consumer);
+          }
+          return null;
+        }, true);
+      } catch (RuntimeException e) {
+        log.error("Projecting events failed, retrying", e);
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  void projectBatch(Session session, MessageConsumer consumer, MessageProducer producer, MessageConverter messageConverter)
+    throws JMSException {
+    Message first = consumer.receive(500);
+    if (first == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    List<Event> events = new ArrayList<>(maxBatchSize);
+    try {
+      events.add((Event) messageConverter.fromMessage(first));
+      // after a failed batch its messages come again, on their own to find out which one failed
+      int batchLimit = first.getJMSRedelivered() ? 1 : maxBatchSize;
+      long waitUntil = System.currentTimeMillis() + maxWaitMillis;
+      while (events.size() < batchLimit) {
+        long remaining = waitUntil - System.currentTimeMillis();
+        Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+        if (next == null) {
+          break;
+        }
+        events.add((Event) messageConverter.fromMessage(next));
+      }
+      List<Event> eventsToSend = messageService.projectAll(events);
+      long position = eventsToSend.isEmpty() ? 0 : positionSequence.reserve(eventsToSend.size());
+      for (Event event : eventsToSend) {
+        producer.send(MessageService.withRoutingProperties(event, messageConverter.toMessage(event, session), position++));
+      }
+      // releases the UI events, the event ring gets them from the topic
+      session.commit();
+    } catch (JMSException | RuntimeException e) {
+      JmsUtils.rollbackIfNecessary(session);
+      throw e;
+    }
+    batchSize.record(events.size());
+    batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    log.info("Projected {} events", events.size());
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    worker = new Thread(this::consume, "event-projection");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @PreDestroy
+  public void stop()
+    throws InterruptedException {
+    running = false;
+    if (worker != null) {
+      worker.join(5_000);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package de.thi.jbsa.prototype.consumer;
 
 import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
@@ -15,15 +16,18 @@ import lombok.extern.java.Log;
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-02-18
  */
 @Component
+@ConditionalOnProperty(name = "studychat.projection.mode", havingValue = "single", matchIfMissing = true)
 @EnableJms
 @Log
 public class EventConsumer {
 
+  static final String EVENT_QUEUE_NAME = "event-queue";
+
   final MessageService messageService;
 
   public EventConsumer(MessageService messageService) {this.messageService = messageService;}
 
-  @JmsListener(destination = "event-queue")
+  @JmsListener(destination = EVENT_QUEUE_NAME)
   public void listener(Event event) {
     log.info("event received " + event);
     if (event instanceof MessagePostedEvent) {
@@ -0,0 +1,104 @@
+package de.thi.jbsa.prototype.consumer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jms.annotation.EnableJms;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.config.JmsConfig;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.service.EventRing;
+import de.thi.jbsa.prototype.service.PositionSequence;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends the events of the UI topic to the {@link EventRing}. The topic only releases an event once its send is committed,
+ * in the listener session of the single mode as well as with the batch of the batch mode.
+ * <p>
+ * The subscription isn't durable. At startup and after a broker connection failure the ring is resumed once the subscription
+ * is registered, with the last position reserved by then as its horizon: every later event arrives from the topic.
+ */
+@Component
+@EnableJms
+@Slf4j
+public class EventRingConsumer {
+
+  private static final String LISTENER_ID = "event-ring";
+
+  private static final long RESUME_RETRY_DELAY_MILLIS = 1000;
+
+  private final EventRing eventRing;
+
+  private final ScheduledExecutorService executor;
+
+  private final JmsListenerEndpointRegistry listenerRegistry;
+
+  private final PositionSequence positionSequence;
+
+  public EventRingConsumer(EventRing eventRing, PositionSequence positionSequence, JmsListenerEndpointRegistry listenerRegistry) {
+    this.eventRing = eventRing;
+    this.positionSequence = positionSequence;
+    this.listenerRegistry = listenerRegistry;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "event-ring-resume");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Called by the broker connection when it failed, events sent meanwhile are missing
+   */
+  public void connectionInterrupted() {
+    eventRing.suspend();
+  }
+
+  /**
+   * Called by the broker connection when it is back
+   */
+  public void connectionResumed() {
+    executor.execute(this::resume);
+  }
+
+  @JmsListener(id = LISTENER_ID, destination = JmsConfig.UI_EVENT_TOPIC, containerFactory = "topicListenerFactory")
+  public void listener(Event event, @Header(name = EventList.POSITION_PROPERTY) long position) {
+    log.debug("UI event at {}", position);
+    eventRing.append(event, position);
+  }
+
+  private void resume() {
+    // events committed before the subscription is registered would be missing
+    MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+    if (!(container instanceof DefaultMessageListenerContainer)
+        || !((DefaultMessageListenerContainer) container).isRegisteredWithDestination()) {
+      executor.schedule(this::resume, RESUME_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+      return;
+    }
+    try {
+      eventRing.resume(positionSequence.getLast());
+    } catch (DataAccessException e) {
+      log.warn("Event ring cannot be resumed: {}", e.toString());
+      executor.schedule(this::resume, RESUME_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumeOnStartup() {
+    executor.execute(this::resume);
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+}
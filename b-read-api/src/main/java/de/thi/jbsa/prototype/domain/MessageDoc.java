@@ -1,5 +1,7 @@
 package de.thi.jbsa.prototype.domain;
 
+import java.util.Date;
+import java.util.UUID;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import de.thi.jbsa.prototype.model.model.Message;
@@ -11,15 +13,30 @@ import lombok.NoArgsConstructor;
  */
 @Data
 @NoArgsConstructor
-@Document(collection = "messages")
+@Document(collection = MessageDoc.COLLECTION)
 public class MessageDoc {
 
+  public static final String COLLECTION = "messages";
+
+  /**
+   * The event uuid of the message
+   */
   @Id
   private String id;
 
   private Message message;
 
+  /**
+   * Time of the latest posted or repeated event of the message, the event catch-up queries by it
+   */
+  private Date updated;
+
   public MessageDoc(Message message) {
+    this.id = idOf(message.getEventUuid());
     this.message = message;
   }
+
+  public static String idOf(UUID eventUuid) {
+    return eventUuid.toString();
+  }
 }
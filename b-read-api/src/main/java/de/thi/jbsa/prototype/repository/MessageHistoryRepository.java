@@ -0,0 +1,20 @@
+package de.thi.jbsa.prototype.repository;
+
+import java.util.Date;
+import java.util.List;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+
+/**
+ * Keyset pagination through the messages, see {@link MessageHistoryRepositoryImpl}.
+ */
+public interface MessageHistoryRepository {
+
+  /**
+   * @param beforeEntityId only messages with a lower entity id, {@code null} for the newest messages
+   * @param senderUserId optional sender
+   * @param from optional start of the time range, inclusive
+   * @param to optional end of the time range, exclusive
+   * @return at most {@code limit} messages ordered by entity id descending
+   */
+  List<MessageDoc> findHistory(Long beforeEntityId, String senderUserId, Date from, Date to, int limit);
+}
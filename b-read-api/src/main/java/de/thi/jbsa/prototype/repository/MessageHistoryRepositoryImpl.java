@@ -0,0 +1,46 @@
+package de.thi.jbsa.prototype.repository;
+
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+
+/**
+ * Every page is one range scan on an index starting with the entity id (see {@code MongoConfig}), no matter how far back
+ * the page is. Skipping with an offset would read all newer messages again.
+ */
+public class MessageHistoryRepositoryImpl
+  implements MessageHistoryRepository {
+
+  private final MongoOperations mongoOperations;
+
+  public MessageHistoryRepositoryImpl(MongoOperations mongoOperations) {
+    this.mongoOperations = mongoOperations;
+  }
+
+  @Override
+  public List<MessageDoc> findHistory(Long beforeEntityId, String senderUserId, Date from, Date to, int limit) {
+    Criteria criteria = Criteria.where("message.entityId");
+    // messages without entity id cannot be paged
+    criteria = beforeEntityId == null ? criteria.ne(null) : criteria.lt(beforeEntityId);
+    if (senderUserId != null) {
+      criteria = criteria.and("message.senderUserId").is(senderUserId);
+    }
+    if (from != null || to != null) {
+      Criteria created = criteria.and("message.created");
+      if (from != null) {
+        created = created.gte(from);
+      }
+      if (to != null) {
+        created = created.lt(to);
+      }
+    }
+    Query query = Query.query(criteria)
+                       .with(Sort.by(Sort.Direction.DESC, "message.entityId"))
+                       .limit(limit);
+    return mongoOperations.find(query, MessageDoc.class);
+  }
+}
@@ -0,0 +1,44 @@
+package de.thi.jbsa.prototype.repository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.model.Message;
+
+/**
+ * Idempotent single-document updates keyed by the event uuid, see {@link MessageUpdateRepositoryImpl}.
+ */
+public interface MessageUpdateRepository {
+
+  /**
+   * Applies the updates of {@link #upsertPosted(Message)} and {@link #applyRepeat(UUID, int)} in one unordered bulk write.
+   * The updates commute, so the order within the bulk doesn't matter.
+   */
+  void applyAll(Collection<Message> postedMessages, Map<UUID, Integer> occurCounts);
+
+  /**
+   * Same as {@link #applyAll(Collection, Map)} for another collection of message documents, e.g. during a replay.
+   */
+  void applyAll(String collectionName, Collection<Message> postedMessages, Map<UUID, Integer> occurCounts);
+
+  /**
+   * Repeats are applied to the message with the event uuid, a repeat consumed before its message creates the document.
+   *
+   * @return the message document after the update
+   */
+  MessageDoc applyRepeat(UUID eventUuid, int occurCount);
+
+  /**
+   * Re-keys the documents written before the event uuid became the id. They are read with a cursor and migrated in bulk
+   * writes of a few hundred documents.
+   *
+   * @return number of migrated documents
+   */
+  int migrateLegacyIds();
+
+  /**
+   * @return the message document after the update, it contains the repeats consumed before the message
+   */
+  MessageDoc upsertPosted(Message message);
+}
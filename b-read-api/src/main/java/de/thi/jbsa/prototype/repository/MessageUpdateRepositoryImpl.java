@@ -0,0 +1,130 @@
+package de.thi.jbsa.prototype.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.model.Message;
+
+/**
+ * The message documents are keyed by the event uuid, so every update is one atomic operation on the primary key.
+ * <p>
+ * The updates are commutative: the fields of a posted event never change, the counter only grows ({@code $max}) and the
+ * earliest projection time is kept ({@code $min}). Redelivered events and events of one message consumed in any order
+ * lead to the same document.
+ */
+public class MessageUpdateRepositoryImpl
+  implements MessageUpdateRepository {
+
+  private static final int MIGRATION_BATCH_SIZE = 500;
+
+  private static final FindAndModifyOptions UPSERT = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+  private final MongoOperations mongoOperations;
+
+  public MessageUpdateRepositoryImpl(MongoOperations mongoOperations) {
+    this.mongoOperations = mongoOperations;
+  }
+
+  static Query byEventUuid(UUID eventUuid) {
+    return Query.query(Criteria.where("_id").is(MessageDoc.idOf(eventUuid)));
+  }
+
+  static Update postedUpdate(Message message) {
+    Update update = new Update().set("message.cmdUuid", message.getCmdUuid())
+                                .set("message.content", message.getContent())
+                                .set("message.entityId", message.getEntityId())
+                                .set("message.eventUuid", message.getEventUuid())
+                                .set("message.senderUserId", message.getSenderUserId())
+                                .max("message.occurCount", message.getOccurCount())
+                                .max("updated", new Date());
+    // null sorts before every date, $min would overwrite a known creation time with it
+    if (message.getCreated() != null) {
+      update.min("message.created", message.getCreated());
+    }
+    return update;
+  }
+
+  static Update repeatUpdate(UUID eventUuid, int occurCount) {
+    return new Update().set("message.eventUuid", eventUuid)
+                       .max("message.occurCount", occurCount)
+                       .max("updated", new Date());
+  }
+
+  @Override
+  public void applyAll(Collection<Message> postedMessages, Map<UUID, Integer> occurCounts) {
+    applyAll(MessageDoc.COLLECTION, postedMessages, occurCounts);
+  }
+
+  @Override
+  public void applyAll(String collectionName, Collection<Message> postedMessages, Map<UUID, Integer> occurCounts) {
+    if (postedMessages.isEmpty() && occurCounts.isEmpty()) {
+      return;
+    }
+    BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, MessageDoc.class, collectionName);
+    for (Message message : postedMessages) {
+      bulkOperations.upsert(byEventUuid(message.getEventUuid()), postedUpdate(message));
+    }
+    occurCounts.forEach((eventUuid, occurCount) -> bulkOperations.upsert(byEventUuid(eventUuid), repeatUpdate(eventUuid, occurCount)));
+    bulkOperations.execute();
+  }
+
+  @Override
+  public MessageDoc applyRepeat(UUID eventUuid, int occurCount) {
+    return mongoOperations.findAndModify(byEventUuid(eventUuid), repeatUpdate(eventUuid, occurCount), UPSERT, MessageDoc.class);
+  }
+
+  @Override
+  public int migrateLegacyIds() {
+    Query legacy = Query.query(Criteria.where("_id").type(JsonSchemaObject.Type.objectIdType())).cursorBatchSize(MIGRATION_BATCH_SIZE);
+    int migrated = 0;
+    List<Message> messages = new ArrayList<>(MIGRATION_BATCH_SIZE);
+    List<Object> legacyIds = new ArrayList<>(MIGRATION_BATCH_SIZE);
+    try (CloseableIterator<Document> documents = mongoOperations.stream(legacy, Document.class, MessageDoc.COLLECTION)) {
+      while (documents.hasNext()) {
+        Document document = documents.next();
+        MessageDoc doc = mongoOperations.getConverter().read(MessageDoc.class, document);
+        if (doc.getMessage() != null && doc.getMessage().getEventUuid() != null) {
+          messages.add(doc.getMessage());
+          legacyIds.add(document.get("_id"));
+        }
+        if (messages.size() == MIGRATION_BATCH_SIZE || !documents.hasNext()) {
+          migrated += migrate(messages, legacyIds);
+        }
+      }
+    }
+    return migrated;
+  }
+
+  /**
+   * Writes the messages with their new ids before the legacy documents are removed, a failure in between leaves both
+   */
+  private int migrate(List<Message> messages, List<Object> legacyIds) {
+    int migrated = messages.size();
+    if (migrated > 0) {
+      applyAll(messages, Collections.emptyMap());
+      mongoOperations.remove(Query.query(Criteria.where("_id").in(legacyIds)), MessageDoc.COLLECTION);
+      messages.clear();
+      legacyIds.clear();
+    }
+    return migrated;
+  }
+
+  @Override
+  public MessageDoc upsertPosted(Message message) {
+    return mongoOperations.findAndModify(byEventUuid(message.getEventUuid()), postedUpdate(message), UPSERT, MessageDoc.class);
+  }
+}
@@ -0,0 +1,143 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The UI events a client missed, by the position of the last event it got.
+ * <p>
+ * Recent positions are served from the {@link EventRing}. For positions older than the ring, the messages posted or repeated
+ * since then are read from the database and returned as events; mentions aren't stored, so they are missing then. If that
+ * is more than {@code max-catch-up} messages, the client is told to reload instead.
+ */
+@Service
+@Slf4j
+public class EventCatchUpService {
+
+  /**
+   * The update time of a message is taken a moment before the position of its event, e.g. for a whole batch at once
+   */
+  private static final long UPDATE_TIME_MARGIN_MILLIS = 10_000;
+
+  private final EventRing eventRing;
+
+  private final int maxEvents;
+
+  private final MessageRepository messageRepository;
+
+  private final long pollTimeoutMillis;
+
+  public EventCatchUpService(
+    EventRing eventRing,
+    MessageRepository messageRepository,
+    @Value("${studychat.events.max-catch-up:1000}") int maxEvents,
+    @Value("${studychat.events.poll-timeout-ms:25000}") long pollTimeoutMillis) {
+    this.eventRing = eventRing;
+    this.messageRepository = messageRepository;
+    this.maxEvents = maxEvents;
+    this.pollTimeoutMillis = pollTimeoutMillis;
+  }
+
+  private static List<AbstractEvent> toAbstractEvents(List<Event> events) {
+    List<AbstractEvent> abstractEvents = new ArrayList<>(events.size());
+    events.forEach(event -> abstractEvents.add((AbstractEvent) event));
+    return abstractEvents;
+  }
+
+  private static Predicate<Event> visibleTo(String userId) {
+    return event -> userId == null || !(event instanceof MentionEvent) || userId.equals(((MentionEvent) event).getMentionedUser());
+  }
+
+  /**
+   * @param after  position of the last event the client got, {@code null} to get just the current position
+   * @param userId only the mentions of this user are returned, all of them if {@code null}
+   */
+  public EventList getEventsAfter(Long after, String userId) {
+    if (after == null) {
+      return new EventList(Collections.emptyList(), eventRing.getLastPosition(), false, false);
+    }
+    EventRing.Slice slice = eventRing.getAfter(after, visibleTo(userId), maxEvents);
+    if (slice == null) {
+      return getEventsFromDb(after);
+    }
+    return new EventList(toAbstractEvents(slice.getEvents()), slice.getPosition(), slice.isHasMore(), false);
+  }
+
+  private EventList getEventsFromDb(long after) {
+    // the messages are written before their events get a position, so everything up to it is in the database
+    long position = eventRing.getLastPosition();
+    Date updatedSince = new Date(EventRing.toTime(after) - UPDATE_TIME_MARGIN_MILLIS);
+    List<MessageDoc> docs = messageRepository.findByUpdatedGreaterThanEqualOrderByUpdatedDesc(updatedSince, PageRequest.of(0, maxEvents + 1));
+    if (docs.size() > maxEvents) {
+      log.info("More than {} messages changed since position {}, client has to reload", maxEvents, after);
+      return new EventList(Collections.emptyList(), position, false, true);
+    }
+    List<AbstractEvent> events = new ArrayList<>();
+    docs.stream()
+        .map(MessageDoc::getMessage)
+        .sorted(Comparator.comparing(Message::getEntityId, Comparator.nullsFirst(Comparator.naturalOrder())))
+        .forEach(message -> {
+          events.add(new MessagePostedEvent(message.getEventUuid(), message.getCmdUuid(), message.getContent(), message.getEntityId(),
+                                            message.getSenderUserId()));
+          if (message.getOccurCount() > 1) {
+            events.add(MessageRepeatedEvent.builder()
+                                           .originalMessageUUID(message.getEventUuid())
+                                           .occurCount(message.getOccurCount())
+                                           .build());
+          }
+        });
+    log.info("Caught up with {} messages since position {} from the database", docs.size(), after);
+    return new EventList(events, position, false, false);
+  }
+
+  /**
+   * Long-poll variant of {@link #getEventsAfter(Long, String)}: if there are no events after the position yet, the result is
+   * set with the next matching event, or without any events after the poll timeout.
+   */
+  public DeferredResult<EventList> pollEventsAfter(long after, String userId) {
+    DeferredResult<EventList> result = new DeferredResult<>(pollTimeoutMillis);
+    Runnable listener = new Runnable() {
+
+      @Override
+      public void run() {
+        EventList events = getEventsAfter(after, userId);
+        if (!events.getEvents().isEmpty() || events.isReloadRequired()) {
+          result.setResult(events);
+        } else if (!result.isSetOrExpired()) {
+          // e.g. a mention of another user
+          eventRing.onNextAppend(this);
+        }
+      }
+    };
+    result.onTimeout(() -> {
+      eventRing.removeAppendListener(listener);
+      result.setResult(getEventsAfter(after, userId));
+    });
+    // registered before looking, so an event appended meanwhile isn't missed
+    eventRing.onNextAppend(listener);
+    EventList events = getEventsAfter(after, userId);
+    if (!events.getEvents().isEmpty() || events.isReloadRequired()) {
+      eventRing.removeAppendListener(listener);
+      result.setResult(events);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,201 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.model.event.Event;
+
+/**
+ * The latest events of the UI topic, each with its position in the stream.
+ * <p>
+ * The positions come from the {@link PositionSequence} shared by all read-api instances, and every instance feeds its ring
+ * from a subscription of the topic. So each ring has the events of all instances and a frontend can catch up from any of
+ * them. {@link #toTime(long)} tells from when a position is. The topic only releases an event after its commit, reserved
+ * positions of rolled back sends are just left out.
+ * <p>
+ * A position is reserved shortly before the send, so events of different instances may arrive slightly out of order. They
+ * are inserted at their position, a client should ask from a bit before its last position and skip the events it got
+ * already. The ring covers all events after its horizon, older positions have to be caught up with from the database.
+ */
+@Component
+public class EventRing {
+
+  /**
+   * Events of the ring after a position
+   */
+  @lombok.Value
+  public static class Slice {
+
+    List<Event> events;
+
+    /**
+     * Position of the last event looked at
+     */
+    long position;
+
+    boolean hasMore;
+  }
+
+  private final Set<Runnable> appendListeners = new LinkedHashSet<>();
+
+  private final Event[] events;
+
+  /**
+   * Greatest position which is no longer in the ring
+   */
+  private long horizon;
+
+  private long lastPosition;
+
+  private final long[] positions;
+
+  private int size;
+
+  private int start;
+
+  /**
+   * Set while the topic subscription is down, the ring misses the events sent meanwhile. The ring starts suspended until it
+   * knows the positions reserved before its subscription.
+   */
+  private boolean suspended = true;
+
+  public EventRing(@Value("${studychat.events.ring-capacity:10000}") int capacity) {
+    this.events = new Event[capacity];
+    this.positions = new long[capacity];
+    this.lastPosition = System.currentTimeMillis() * 1000;
+    this.horizon = lastPosition;
+  }
+
+  public static long toTime(long position) {
+    return position / 1000;
+  }
+
+  /**
+   * Inserts the event at its position, an event at a position the ring has or doesn't cover is ignored
+   */
+  public void append(Event event, long position) {
+    List<Runnable> listeners;
+    synchronized (this) {
+      if (position <= horizon) {
+        return;
+      }
+      int offset = size == 0 || positions[index(size - 1)] < position ? size : offsetAfter(position - 1);
+      if (offset < size && positions[index(offset)] == position) {
+        return;
+      }
+      if (size == events.length) {
+        horizon = positions[start];
+        start = index(1);
+        size--;
+        offset--;
+        if (offset < 0) {
+          return;
+        }
+      }
+      // events of other instances may come a little late, they are inserted by moving the later ones
+      for (int i = size; i > offset; i--) {
+        events[index(i)] = events[index(i - 1)];
+        positions[index(i)] = positions[index(i - 1)];
+      }
+      events[index(offset)] = event;
+      positions[index(offset)] = position;
+      size++;
+      lastPosition = Math.max(lastPosition, position);
+      if (appendListeners.isEmpty()) {
+        return;
+      }
+      listeners = new ArrayList<>(appendListeners);
+      appendListeners.clear();
+    }
+    listeners.forEach(Runnable::run);
+  }
+
+  /**
+   * @param limit the result contains at most this many events, {@code hasMore} is set if there are further ones
+   * @return the matching events after the position, {@code null} if the ring doesn't cover the position (anymore)
+   */
+  public synchronized Slice getAfter(long after, Predicate<Event> filter, int limit) {
+    if (suspended || after < horizon) {
+      return null;
+    }
+    List<Event> result = new ArrayList<>();
+    long position = after;
+    for (int i = offsetAfter(after); i < size; i++) {
+      int index = index(i);
+      if (result.size() == limit) {
+        return new Slice(result, position, true);
+      }
+      if (filter.test(events[index])) {
+        result.add(events[index]);
+      }
+      position = positions[index];
+    }
+    return new Slice(result, lastPosition, false);
+  }
+
+  public synchronized long getLastPosition() {
+    return lastPosition;
+  }
+
+  private int index(int offset) {
+    return (start + offset) % events.length;
+  }
+
+  /**
+   * @return offset of the first event after the position, a binary search as the positions are sorted
+   */
+  private int offsetAfter(long after) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (positions[index(middle)] <= after) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * The listener is called once after the next append, on the appending thread.
+   */
+  public synchronized void onNextAppend(Runnable listener) {
+    appendListeners.add(listener);
+  }
+
+  public synchronized void removeAppendListener(Runnable listener) {
+    appendListeners.remove(listener);
+  }
+
+  /**
+   * The topic subscription is (back) up. The ring covers the positions after the horizon, the events up to it are dropped.
+   *
+   * @param horizon last position reserved before the subscription, its events may have been missed
+   */
+  public synchronized void resume(long horizon) {
+    suspended = false;
+    if (horizon <= this.horizon) {
+      return;
+    }
+    this.horizon = horizon;
+    lastPosition = Math.max(lastPosition, horizon);
+    while (size > 0 && positions[start] <= horizon) {
+      events[start] = null;
+      start = index(1);
+      size--;
+    }
+  }
+
+  /**
+   * The topic subscription was interrupted, positions are caught up with from the database until it is resumed
+   */
+  public synchronized void suspend() {
+    suspended = true;
+  }
+}
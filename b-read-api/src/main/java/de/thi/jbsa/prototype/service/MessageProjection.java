@@ -0,0 +1,66 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import lombok.Getter;
+
+/**
+ * Collects the changes of the read-db for a batch of events, used by the live projection and the replay. Repeats of the
+ * same message collapse to the highest counter.
+ */
+@Getter
+public class MessageProjection {
+
+  private final List<Event> eventsToSend = new ArrayList<>();
+
+  private final Map<UUID, Integer> occurCounts = new HashMap<>();
+
+  private final List<Message> postedMessages = new ArrayList<>();
+
+  static Message toMessage(MessagePostedEvent event, Date created) {
+    Message msg = new Message();
+    msg.setCmdUuid(event.getCmdUuid());
+    msg.setContent(event.getContent());
+    msg.setCreated(created);
+    msg.setEntityId(event.getEntityId());
+    msg.setEventUuid(event.getUuid());
+    msg.setSenderUserId(event.getUserId());
+    return msg;
+  }
+
+  /**
+   * @param created creation time of a posted message
+   * @return false if the event isn't supported
+   */
+  public boolean add(Event event, Date created) {
+    if (event instanceof MessagePostedEvent) {
+      postedMessages.add(toMessage((MessagePostedEvent) event, created));
+    } else if (event instanceof MessageRepeatedEvent) {
+      MessageRepeatedEvent repeatedEvent = (MessageRepeatedEvent) event;
+      occurCounts.merge(repeatedEvent.getOriginalMessageUUID(), repeatedEvent.getOccurCount(), Math::max);
+    } else if (!(event instanceof MentionEvent)) {
+      return false;
+    }
+    eventsToSend.add(event);
+    return true;
+  }
+
+  public void clear() {
+    eventsToSend.clear();
+    occurCounts.clear();
+    postedMessages.clear();
+  }
+
+  public int size() {
+    return eventsToSend.size();
+  }
+}
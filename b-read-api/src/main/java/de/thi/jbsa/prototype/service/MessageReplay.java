@@ -0,0 +1,222 @@
+package de.thi.jbsa.prototype.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import de.thi.jbsa.prototype.config.MongoConfig;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rebuilds the messages collection from the event-source db at startup if {@code studychat.replay.enabled=true}.
+ * <p>
+ * The events are streamed in the order of their ids with a server-side cursor ({@code fetch-size} rows per round trip) and
+ * projected with the same code as the live events into a shadow collection, one bulk write per {@code batch-size} events.
+ * The id of the last written event is stored as checkpoint, an interrupted replay continues there. When the stream is
+ * through, the shadow collection gets its indexes and replaces the messages collection with one atomic rename. Events
+ * written to the event-source db meanwhile are replayed once more into the new collection, which is safe because the
+ * projection is idempotent.
+ * <p>
+ * The ids come from a pooled sequence and concurrent transactions, so an event with a lower id may be committed after a
+ * higher one was read. Every pass after the first one therefore scans {@code overlap-ids} ids below the last event again.
+ */
+@Component
+@ConditionalOnProperty(name = "studychat.replay.enabled", havingValue = "true")
+@Slf4j
+public class MessageReplay
+  implements ApplicationRunner {
+
+  static final String CHECKPOINT_COLLECTION = "replay_checkpoints";
+
+  static final String SHADOW_COLLECTION = MessageDoc.COLLECTION + "_replay";
+
+  private static final String SELECT_EVENTS = "select id, value, created from event_entity where id > ? and id <= ? order by id";
+
+  private final int batchSize;
+
+  private final int fetchSize;
+
+  private final long overlapIds;
+
+  private final String jdbcPassword;
+
+  private final String jdbcUrl;
+
+  private final String jdbcUsername;
+
+  private final MessageRepository messageRepository;
+
+  private final MessageService messageService;
+
+  private final MongoTemplate mongoTemplate;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  public MessageReplay(
+    MessageRepository messageRepository,
+    MessageService messageService,
+    MongoTemplate mongoTemplate,
+    @Value("${studychat.replay.jdbc-url}") String jdbcUrl,
+    @Value("${studychat.replay.username}") String jdbcUsername,
+    @Value("${studychat.replay.password}") String jdbcPassword,
+    @Value("${studychat.replay.fetch-size:5000}") int fetchSize,
+    @Value("${studychat.replay.batch-size:1000}") int batchSize,
+    @Value("${studychat.replay.overlap-ids:10000}") long overlapIds) {
+    this.messageRepository = messageRepository;
+    this.messageService = messageService;
+    this.mongoTemplate = mongoTemplate;
+    this.jdbcUrl = jdbcUrl;
+    this.jdbcUsername = jdbcUsername;
+    this.jdbcPassword = jdbcPassword;
+    this.fetchSize = fetchSize;
+    this.batchSize = batchSize;
+    this.overlapIds = overlapIds;
+  }
+
+  /**
+   * Projects the events after the last one projected up to the current end of the event-source db, including the overlap
+   *
+   * @return the id of the last projected event
+   */
+  long catchUp(Connection connection, String collectionName, long lastEventId, boolean checkpoints)
+    throws Exception {
+    long afterId = Math.max(0, lastEventId - overlapIds);
+    return Math.max(lastEventId, project(connection, collectionName, afterId, maxEventId(connection), checkpoints));
+  }
+
+  private void checkpoint(long lastEventId) {
+    mongoTemplate.upsert(Query.query(Criteria.where("_id").is(SHADOW_COLLECTION)),
+                         Update.update("lastEventId", lastEventId),
+                         CHECKPOINT_COLLECTION);
+  }
+
+  private long loadCheckpoint() {
+    Document checkpoint = mongoTemplate.findById(SHADOW_COLLECTION, Document.class, CHECKPOINT_COLLECTION);
+    if (checkpoint != null && mongoTemplate.collectionExists(SHADOW_COLLECTION)) {
+      return checkpoint.getLong("lastEventId");
+    }
+    // nothing to continue, start from scratch
+    mongoTemplate.dropCollection(SHADOW_COLLECTION);
+    return 0;
+  }
+
+  private long maxEventId(Connection connection)
+    throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("select coalesce(max(id), 0) from event_entity")) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+
+  /**
+   * Projects the events with {@code afterId < id <= toId} into the collection
+   *
+   * @return the id of the last projected event
+   */
+  long project(Connection connection, String collectionName, long afterId, long toId, boolean checkpoints)
+    throws Exception {
+    long start = System.nanoTime();
+    long count = 0;
+    long lastEventId = afterId;
+    MessageProjection projection = new MessageProjection();
+    try (PreparedStatement statement = connection.prepareStatement(SELECT_EVENTS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      statement.setFetchSize(fetchSize);
+      statement.setLong(1, afterId);
+      statement.setLong(2, toId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          AbstractEvent event = objectMapper.readValue(resultSet.getString("value"), AbstractEvent.class);
+          event.setEntityId(resultSet.getLong("id"));
+          // rows written before the column was added have no creation time, the document then keeps the one it has
+          Timestamp created = resultSet.getTimestamp("created");
+          if (!projection.add(event, created == null ? null : new Date(created.getTime()))) {
+            log.warn("Not supported event {} skipped", event.getEntityId());
+          }
+          lastEventId = event.getEntityId();
+          count++;
+          if (count % batchSize == 0) {
+            write(collectionName, projection, lastEventId, checkpoints);
+            if (count % (batchSize * 100L) == 0) {
+              log.info("Replayed {} events, {} events/s", count, count * 1_000_000_000L / Math.max(1, System.nanoTime() - start));
+            }
+          }
+        }
+      }
+    }
+    write(collectionName, projection, lastEventId, checkpoints);
+    log.info("Replayed {} events into {} in {} ms, {} events/s",
+             count,
+             collectionName,
+             (System.nanoTime() - start) / 1_000_000,
+             count * 1_000_000_000L / Math.max(1, System.nanoTime() - start));
+    return lastEventId;
+  }
+
+  public void replay()
+    throws Exception {
+    try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUsername, jdbcPassword)) {
+      // PostgreSQL uses a cursor for the fetch size only within a transaction
+      connection.setAutoCommit(false);
+      connection.setReadOnly(true);
+      long lastEventId = loadCheckpoint();
+      if (lastEventId > 0) {
+        log.info("Continuing replay after event {}", lastEventId);
+      }
+      lastEventId = catchUp(connection, SHADOW_COLLECTION, lastEventId, true);
+      connection.commit();
+      // the events written during the first run, a much shorter one
+      lastEventId = catchUp(connection, SHADOW_COLLECTION, lastEventId, true);
+      connection.commit();
+
+      MongoConfig.ensureMessageIndexes(mongoTemplate.indexOps(SHADOW_COLLECTION));
+      mongoTemplate.getCollection(SHADOW_COLLECTION)
+                   .renameCollection(new MongoNamespace(mongoTemplate.getDb().getName(), MessageDoc.COLLECTION),
+                                     new RenameCollectionOptions().dropTarget(true));
+      mongoTemplate.remove(Query.query(Criteria.where("_id").is(SHADOW_COLLECTION)), CHECKPOINT_COLLECTION);
+      log.info("Replaced {} by the replayed collection", MessageDoc.COLLECTION);
+
+      // events projected into the old collection since the last run are lost with it
+      catchUp(connection, MessageDoc.COLLECTION, lastEventId, false);
+      connection.commit();
+    }
+    messageService.warmUpRecentMessages();
+  }
+
+  @Override
+  public void run(ApplicationArguments args)
+    throws Exception {
+    replay();
+  }
+
+  private void write(String collectionName, MessageProjection projection, long lastEventId, boolean checkpoint) {
+    if (projection.size() == 0) {
+      return;
+    }
+    messageRepository.applyAll(collectionName, projection.getPostedMessages(), projection.getOccurCounts());
+    projection.clear();
+    if (checkpoint) {
+      checkpoint(lastEventId);
+    }
+  }
+}
@@ -1,18 +1,28 @@
 package de.thi.jbsa.prototype.service;
 
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.JMSException;
 import javax.jms.Topic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.EventList;
 import de.thi.jbsa.prototype.model.event.MentionEvent;
 import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
 import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
 import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.model.model.MessagePage;
 import de.thi.jbsa.prototype.repository.MessageRepository;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,58 +30,187 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageService {
 
+  private static final long WARM_UP_MAX_DELAY_MILLIS = 60_000;
+
+  private static final long WARM_UP_MIN_DELAY_MILLIS = 1000;
+
   private final JmsTemplate jmsTemplate;
 
+  private final int maxHistoryPageSize;
+
   private final MessageRepository messageRepository;
 
+  private final PositionSequence positionSequence;
+
+  private final RecentMessageWindow recentMessageWindow;
+
   private final Topic topic;
 
-  public MessageService(MessageRepository messageRepository, JmsTemplate jmsTemplate, Topic topic) {
+  private Thread warmUpWorker;
+
+  public MessageService(
+    MessageRepository messageRepository,
+    JmsTemplate jmsTemplate,
+    Topic topic,
+    RecentMessageWindow recentMessageWindow,
+    PositionSequence positionSequence,
+    @Value("${studychat.history.max-page-size:200}") int maxHistoryPageSize) {
     this.messageRepository = messageRepository;
+    this.maxHistoryPageSize = maxHistoryPageSize;
     this.jmsTemplate = jmsTemplate;
     this.topic = topic;
+    this.recentMessageWindow = recentMessageWindow;
+    this.positionSequence = positionSequence;
   }
 
-  private Message createMsg(MessagePostedEvent event) {
-    Message msg = new Message();
-    msg.setCmdUuid(event.getCmdUuid());
-    msg.setContent(event.getContent());
-    msg.setCreated(new Date());
-    msg.setEntityId(event.getEntityId());
-    msg.setEventUuid(event.getUuid());
-    msg.setSenderUserId(event.getUserId());
-    return msg;
+  /**
+   * @param before entity id of the last message of the previous page, {@code null} for the first page
+   */
+  public MessagePage getHistory(Long before, String senderUserId, Date from, Date to, int limit) {
+    int pageSize = Math.max(1, Math.min(limit, maxHistoryPageSize));
+    List<Message> messages = messageRepository.findHistory(before, senderUserId, from, to, pageSize)
+                                              .stream()
+                                              .map(MessageDoc::getMessage)
+                                              .collect(Collectors.toList());
+    Long nextBefore = messages.size() < pageSize ? null : messages.get(messages.size() - 1).getEntityId();
+    return new MessagePage(messages, nextBefore);
   }
 
   public List<Message> getlast10Messages() {
-    return messageRepository.findFirst10ByOrderByMessage_CreatedDesc()
-                            .stream()
-                            .map(MessageDoc::getMessage)
-                            .sorted(Comparator.comparingLong(Message::getEntityId))
-                            .collect(Collectors.toList());
+    if (!recentMessageWindow.isWarmedUp()) {
+      // the window only has the messages consumed since the start, the warm-up retries in the background
+      List<Message> messages = messageRepository.findByOrderByMessage_EntityIdDesc(PageRequest.of(0, 10))
+                                                .stream()
+                                                .map(MessageDoc::getMessage)
+                                                .collect(Collectors.toList());
+      Collections.reverse(messages);
+      return messages;
+    }
+    return recentMessageWindow.getLatest(10);
+  }
+
+  @PostConstruct
+  public void init() {
+    warmUpWorker = new Thread(this::warmUpRecentMessagesUntilDone, "recent-messages-warm-up");
+    warmUpWorker.setDaemon(true);
+    warmUpWorker.start();
+  }
+
+  /**
+   * Re-keys the legacy message documents once the application is up, on a thread of its own: the collection may be large
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateLegacyIdsOnStartup() {
+    Thread migration = new Thread(() -> {
+      try {
+        int migrated = messageRepository.migrateLegacyIds();
+        if (migrated > 0) {
+          log.info("Migrated {} messages to their event uuid as id", migrated);
+        }
+      } catch (DataAccessException e) {
+        log.warn("Messages cannot be migrated: {}", e.toString());
+      }
+    }, "legacy-id-migration");
+    migration.setDaemon(true);
+    migration.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (warmUpWorker != null) {
+      warmUpWorker.interrupt();
+    }
+  }
+
+  /**
+   * Retries the warm-up with a growing delay until the database is available
+   */
+  private void warmUpRecentMessagesUntilDone() {
+    long delayMillis = WARM_UP_MIN_DELAY_MILLIS;
+    while (!warmUpRecentMessages()) {
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      delayMillis = Math.min(delayMillis * 2, WARM_UP_MAX_DELAY_MILLIS);
+    }
+  }
+
+  /**
+   * @return {@code false} if the messages cannot be loaded
+   */
+  public boolean warmUpRecentMessages() {
+    try {
+      List<Message> messages = messageRepository.findByOrderByMessage_EntityIdDesc(PageRequest.of(0, recentMessageWindow.getCapacity()))
+                                                .stream()
+                                                .map(MessageDoc::getMessage)
+                                                .collect(Collectors.toList());
+      recentMessageWindow.warmUp(messages);
+      log.info("Loaded {} recent messages", messages.size());
+      return true;
+    } catch (DataAccessException e) {
+      log.warn("Recent messages cannot be loaded: {}", e.toString());
+      return false;
+    }
+  }
+
+  /**
+   * Projects a batch of events into the read-db with a single bulk write. Unlike the handle methods, the events are not
+   * sent to the UI topic, the caller does it together with the acknowledge of the batch.
+   *
+   * @return the events to send to the UI topic
+   */
+  public List<Event> projectAll(List<? extends Event> events) {
+    MessageProjection projection = new MessageProjection();
+    Date now = new Date();
+    for (Event event : events) {
+      if (!projection.add(event, now)) {
+        // a single unknown event must not block the whole batch
+        log.error("Not supported event, skipped: {}", event);
+      }
+    }
+    messageRepository.applyAll(projection.getPostedMessages(), projection.getOccurCounts());
+    projection.getPostedMessages().forEach(recentMessageWindow::messagePosted);
+    projection.getOccurCounts().forEach(recentMessageWindow::messageRepeated);
+    return projection.getEventsToSend();
+  }
+
+  /**
+   * Sets the JMS properties the frontends select the UI events by: the recipient of a mention, nothing for the events every
+   * UI shows. The position in the {@link EventRing} lets a frontend catch up after a reconnect.
+   */
+  public static javax.jms.Message withRoutingProperties(Event event, javax.jms.Message message, long position)
+    throws JMSException {
+    message.setLongProperty(EventList.POSITION_PROPERTY, position);
+    if (event instanceof MentionEvent) {
+      message.setStringProperty(MentionEvent.RECIPIENT_PROPERTY, ((MentionEvent) event).getMentionedUser());
+    }
+    return message;
   }
 
   public void handleMentionEvent(MentionEvent event) {
     // This is a temporary event. We don't need that in the read-db.
-    jmsTemplate.convertAndSend(topic, event);
+    sendToUi(event);
   }
 
   public void handleMessagePostedEvent(MessagePostedEvent event) {
-    MessageDoc doc = new MessageDoc(createMsg(event));
-    messageRepository.save(doc);
-    jmsTemplate.convertAndSend(topic, event);
+    MessageDoc doc = messageRepository.upsertPosted(MessageProjection.toMessage(event, new Date()));
+    recentMessageWindow.messagePosted(doc.getMessage());
+    sendToUi(event);
   }
 
   public void handleMessageRepeatedEvent(MessageRepeatedEvent event) {
-    Optional<MessageDoc> existingMessage = messageRepository.findFirstByMessage_EventUuidOrderByMessage_CreatedDesc(event.getOriginalMessageUUID());
-    if (!existingMessage.isPresent()){
-      log.error("Didn't find message to increase the counter");
-      return;
-    }
-    log.debug("Message with UUID {} occurred for the {} times", existingMessage.get().getMessage().getEventUuid(), event.getOccurCount());
-    existingMessage.get().getMessage().setOccurCount(event.getOccurCount());
+    log.debug("Message with UUID {} occurred for the {} times", event.getOriginalMessageUUID(), event.getOccurCount());
+    messageRepository.applyRepeat(event.getOriginalMessageUUID(), event.getOccurCount());
+    recentMessageWindow.messageRepeated(event.getOriginalMessageUUID(), event.getOccurCount());
+    sendToUi(event);
+  }
 
-    messageRepository.save(existingMessage.get());
-    jmsTemplate.convertAndSend(topic, event);
+  private void sendToUi(Event event) {
+    long position = positionSequence.reserve(1);
+    // joins the session of the listener, the event ring gets the event from the topic once the session is committed
+    jmsTemplate.convertAndSend(topic, event, message -> withRoutingProperties(event, message, position));
   }
 }
@@ -0,0 +1,63 @@
+package de.thi.jbsa.prototype.service;
+
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * The positions of the UI topic, shared by all read-api instances through a counter in the read-db.
+ * <p>
+ * Positions grow strictly and are at least the current time in ms * 1000, so {@link EventRing#toTime(long)} tells from when
+ * a position is. The counter is set with a compare and swap, an instance which lost the race reads it again.
+ */
+@Component
+public class PositionSequence {
+
+  static final String COLLECTION = "sequences";
+
+  private static final String SEQUENCE_ID = "ui-position";
+
+  private static final String VALUE = "value";
+
+  private final MongoOperations mongoOperations;
+
+  public PositionSequence(MongoOperations mongoOperations) {
+    this.mongoOperations = mongoOperations;
+  }
+
+  /**
+   * @return the last position reserved by any instance
+   */
+  public long getLast() {
+    Document sequence = mongoOperations.findById(SEQUENCE_ID, Document.class, COLLECTION);
+    return sequence == null ? 0 : sequence.getLong(VALUE);
+  }
+
+  /**
+   * Reserves the next {@code count} positions, e.g. for a batch of events
+   *
+   * @return the first of the positions
+   */
+  public long reserve(int count) {
+    while (true) {
+      long last = getLast();
+      long next = Math.max(last + count, System.currentTimeMillis() * 1000 + count - 1);
+      if (last == 0) {
+        try {
+          mongoOperations.insert(new Document("_id", SEQUENCE_ID).append(VALUE, next), COLLECTION);
+          return next - count + 1;
+        } catch (DuplicateKeyException e) {
+          continue;
+        }
+      }
+      Query unchanged = Query.query(Criteria.where("_id").is(SEQUENCE_ID).and(VALUE).is(last));
+      if (mongoOperations.updateFirst(unchanged, Update.update(VALUE, next), COLLECTION).getModifiedCount() == 1) {
+        return next - count + 1;
+      }
+    }
+  }
+}
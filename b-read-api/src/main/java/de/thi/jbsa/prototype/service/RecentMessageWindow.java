@@ -0,0 +1,125 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import de.thi.jbsa.prototype.model.model.Message;
+
+/**
+ * The most recent messages ordered by their entity id, kept in memory so reading them doesn't need the database.
+ * <p>
+ * Readers get an immutable snapshot without any locking. Every update copies the (small) window and replaces the snapshot
+ * with a compare-and-set, so concurrent updates never block the readers. The messages of a snapshot are never changed
+ * afterwards, a repeat replaces the message by a copy with the new counter.
+ */
+@Component
+public class RecentMessageWindow {
+
+  private static final Comparator<Message> BY_ENTITY_ID = Comparator.comparing(Message::getEntityId,
+                                                                               Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  private final int capacity;
+
+  private final AtomicReference<List<Message>> snapshot = new AtomicReference<>(Collections.emptyList());
+
+  private volatile boolean warmedUp;
+
+  public RecentMessageWindow(@Value("${studychat.recent-messages.capacity:100}") int capacity) {
+    this.capacity = capacity;
+  }
+
+  private static Message copy(Message message) {
+    return new Message(message.getCmdUuid(),
+                       message.getContent(),
+                       message.getCreated(),
+                       message.getEntityId(),
+                       message.getEventUuid(),
+                       message.getSenderUserId(),
+                       message.getOccurCount());
+  }
+
+  private static int indexOf(List<Message> messages, UUID eventUuid) {
+    for (int i = messages.size() - 1; i >= 0; i--) {
+      if (Objects.equals(messages.get(i).getEventUuid(), eventUuid)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private List<Message> add(List<Message> current, Message message) {
+    int existing = indexOf(current, message.getEventUuid());
+    if (existing >= 0) {
+      // the event was delivered again
+      return current;
+    }
+    if (current.size() >= capacity && BY_ENTITY_ID.compare(message, current.get(0)) < 0) {
+      // older than everything in a full window
+      return current;
+    }
+    List<Message> next = new ArrayList<>(current.size() + 1);
+    next.addAll(current);
+    int index = Collections.binarySearch(next, message, BY_ENTITY_ID);
+    next.add(index < 0 ? -index - 1 : index + 1, message);
+    if (next.size() > capacity) {
+      next.remove(0);
+    }
+    return Collections.unmodifiableList(next);
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the latest {@code limit} messages, ordered by entity id
+   */
+  public List<Message> getLatest(int limit) {
+    List<Message> messages = snapshot.get();
+    return messages.size() <= limit ? messages : messages.subList(messages.size() - limit, messages.size());
+  }
+
+  /**
+   * @return false until the window was filled from the database
+   */
+  public boolean isWarmedUp() {
+    return warmedUp;
+  }
+
+  public void messagePosted(Message message) {
+    Message copy = copy(message);
+    snapshot.updateAndGet(current -> add(current, copy));
+  }
+
+  public void messageRepeated(UUID eventUuid, int occurCount) {
+    snapshot.updateAndGet(current -> {
+      int index = indexOf(current, eventUuid);
+      if (index < 0 || current.get(index).getOccurCount() >= occurCount) {
+        return current;
+      }
+      Message repeated = copy(current.get(index));
+      repeated.setOccurCount(occurCount);
+      List<Message> next = new ArrayList<>(current);
+      next.set(index, repeated);
+      return Collections.unmodifiableList(next);
+    });
+  }
+
+  /**
+   * Merges the messages loaded from the database. Events consumed in the meantime are kept.
+   */
+  public void warmUp(Collection<Message> messages) {
+    for (Message message : messages) {
+      messagePosted(message);
+      messageRepeated(message.getEventUuid(), message.getOccurCount());
+    }
+    warmedUp = true;
+  }
+}
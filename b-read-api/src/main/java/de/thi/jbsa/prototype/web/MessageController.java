@@ -1,15 +1,22 @@
 package de.thi.jbsa.prototype.web;
 
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.BinaryOperator;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import de.thi.jbsa.prototype.model.event.EventList;
 import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.model.model.MessagePage;
+import de.thi.jbsa.prototype.service.EventCatchUpService;
 import de.thi.jbsa.prototype.service.MessageService;
 import lombok.extern.slf4j.Slf4j;
 
@@ -18,12 +25,53 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageController {
 
+  private final EventCatchUpService eventCatchUpService;
+
   private final MessageService messageService;
 
-  public MessageController(MessageService messageService) {this.messageService = messageService;}
+  public MessageController(MessageService messageService, EventCatchUpService eventCatchUpService) {
+    this.messageService = messageService;
+    this.eventCatchUpService = eventCatchUpService;
+  }
+
+  /**
+   * The UI events after the {@code position} of the last event a client got, e.g. after a reconnect to the broker. Without
+   * {@code after} only the current position is returned. The events of the read-api instances may arrive a little out of
+   * order, so a client should ask from a bit before its last position and skip the events it got already.
+   */
+  @GetMapping("/events")
+  public ResponseEntity<EventList> getEvents(
+    @RequestParam(required = false) Long after,
+    @RequestParam(name = "userid", required = false) String userId) {
+    return new ResponseEntity<>(eventCatchUpService.getEventsAfter(after, userId), HttpStatus.OK);
+  }
+
+  /**
+   * Like {@code /events}, but waits for the next event if there is none yet
+   */
+  @GetMapping("/events/poll")
+  public DeferredResult<EventList> pollEvents(
+    @RequestParam long after,
+    @RequestParam(name = "userid", required = false) String userId) {
+    return eventCatchUpService.pollEventsAfter(after, userId);
+  }
 
   @GetMapping("/messages")
   public ResponseEntity<List<Message>> getMessages() {
     return new ResponseEntity<>(messageService.getlast10Messages(), HttpStatus.OK);
   }
+
+  /**
+   * Scrolls back through all messages, newest first. The {@code nextBefore} of a page is passed as {@code before} to get the
+   * next one.
+   */
+  @GetMapping("/messages/history")
+  public ResponseEntity<MessagePage> getHistory(
+    @RequestParam(required = false) Long before,
+    @RequestParam(required = false) String sender,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+    @RequestParam(defaultValue = "50") int limit) {
+    return new ResponseEntity<>(messageService.getHistory(before, sender, from, to, limit), HttpStatus.OK);
+  }
 }
@@ -0,0 +1,154 @@
+package de.thi.jbsa.prototype.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.service.MessageService;
+import de.thi.jbsa.prototype.service.PositionSequence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BatchEventConsumerTest {
+
+  private final Map<Event, Message> uiMessages = new HashMap<>();
+
+  private BatchEventConsumer batchEventConsumer;
+
+  private MessageConsumer consumer;
+
+  private MessageConverter messageConverter;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private MessageService messageService;
+
+  private MessageProducer producer;
+
+  private Session session;
+
+  private Message message(Event event, boolean redelivered)
+    throws JMSException {
+    Message message = mock(Message.class);
+    when(message.getJMSRedelivered()).thenReturn(redelivered);
+    when(messageConverter.fromMessage(message)).thenReturn(event);
+    Message uiMessage = mock(Message.class);
+    uiMessages.put(event, uiMessage);
+    when(messageConverter.toMessage(event, session)).thenReturn(uiMessage);
+    return message;
+  }
+
+  private Event event(long entityId) {
+    return new MessagePostedEvent(UUID.randomUUID(), "Message " + entityId, entityId, "timmy");
+  }
+
+  @BeforeEach
+  void setUp() {
+    messageService = mock(MessageService.class);
+    when(messageService.projectAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    PositionSequence positionSequence = mock(PositionSequence.class);
+    when(positionSequence.reserve(anyInt())).thenReturn(1000L);
+    messageConverter = mock(MessageConverter.class);
+    JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+    when(jmsTemplate.getConnectionFactory()).thenReturn(mock(ConnectionFactory.class));
+    when(jmsTemplate.getMessageConverter()).thenReturn(messageConverter);
+    session = mock(Session.class);
+    consumer = mock(MessageConsumer.class);
+    producer = mock(MessageProducer.class);
+    meterRegistry = new SimpleMeterRegistry();
+    batchEventConsumer = new BatchEventConsumer(messageService, positionSequence, jmsTemplate, mock(Topic.class), meterRegistry, 100, 50);
+  }
+
+  @Test
+  void redeliveredFirstMessageIsProjectedAndCommittedOnItsOwn()
+    throws JMSException {
+    // given
+    Event redelivered = event(1);
+    Message redeliveredMessage = message(redelivered, true);
+    Message nextMessage = message(event(2), false);
+    when(consumer.receive(anyLong())).thenReturn(redeliveredMessage, nextMessage);
+    when(consumer.receiveNoWait()).thenReturn(nextMessage);
+
+    // when
+    batchEventConsumer.projectBatch(session, consumer, producer, messageConverter);
+
+    // then
+    verify(consumer, times(1)).receive(anyLong());
+    verify(consumer, never()).receiveNoWait();
+    InOrder inOrder = inOrder(messageService, producer, session);
+    inOrder.verify(messageService).projectAll(Collections.singletonList(redelivered));
+    inOrder.verify(producer).send(uiMessages.get(redelivered));
+    inOrder.verify(session).commit();
+    verify(uiMessages.get(redelivered)).setLongProperty(EventList.POSITION_PROPERTY, 1000L);
+    assertEquals(1, meterRegistry.get("studychat.projection.batch.size").summary().totalAmount());
+  }
+
+  @Test
+  void messagesAreProjectedAndCommittedAsOneBatch()
+    throws JMSException {
+    // given
+    Event first = event(1);
+    Event second = event(2);
+    Message firstMessage = message(first, false);
+    Message secondMessage = message(second, false);
+    when(consumer.receive(anyLong())).thenReturn(firstMessage, secondMessage, null);
+
+    // when
+    batchEventConsumer.projectBatch(session, consumer, producer, messageConverter);
+
+    // then
+    InOrder inOrder = inOrder(messageService, producer, session);
+    inOrder.verify(messageService).projectAll(Arrays.asList(first, second));
+    inOrder.verify(producer).send(uiMessages.get(first));
+    inOrder.verify(producer).send(uiMessages.get(second));
+    inOrder.verify(session).commit();
+    verify(uiMessages.get(first)).setLongProperty(EventList.POSITION_PROPERTY, 1000L);
+    verify(uiMessages.get(second)).setLongProperty(EventList.POSITION_PROPERTY, 1001L);
+  }
+
+  @Test
+  void failedProjectionRollsTheBatchBack()
+    throws JMSException {
+    // given
+    Message message = message(event(1), false);
+    when(consumer.receive(anyLong())).thenReturn(message, (Message) null);
+    when(messageService.projectAll(anyList())).thenThrow(new DataAccessResourceFailureException("read-db is gone"));
+
+    // when
+    assertThrows(DataAccessResourceFailureException.class,
+                 () -> batchEventConsumer.projectBatch(session, consumer, producer, messageConverter));
+
+    // then
+    verify(producer, never()).send(any(Message.class));
+    verify(session, never()).commit();
+    verify(session).rollback();
+  }
+}
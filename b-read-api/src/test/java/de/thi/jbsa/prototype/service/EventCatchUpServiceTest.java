@@ -0,0 +1,95 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+
+class EventCatchUpServiceTest {
+
+  private EventCatchUpService eventCatchUpService;
+
+  private EventRing eventRing;
+
+  private MessageRepository messageRepository;
+
+  @BeforeEach
+  void setUp() {
+    eventRing = new EventRing(2);
+    eventRing.resume(eventRing.getLastPosition());
+    messageRepository = mock(MessageRepository.class);
+    eventCatchUpService = new EventCatchUpService(eventRing, messageRepository, 2, 1000);
+  }
+
+  @Test
+  void getEventsAfterReturnsOnlyOwnMentionsFromRing() {
+    // given
+    long start = eventRing.getLastPosition();
+    MentionEvent ownMention = new MentionEvent(UUID.randomUUID(), "bernd", Collections.singletonList(6), "timmy");
+    eventRing.append(new MentionEvent(UUID.randomUUID(), "tommy", Collections.singletonList(6), "timmy"), start + 1);
+    eventRing.append(ownMention, start + 2);
+    // when
+    EventList events = eventCatchUpService.getEventsAfter(start, "bernd");
+    // then
+    assertEquals(Collections.singletonList(ownMention), events.getEvents());
+    assertEquals(eventRing.getLastPosition(), events.getPosition());
+    verify(messageRepository, never()).findByUpdatedGreaterThanEqualOrderByUpdatedDesc(any(), any());
+  }
+
+  @Test
+  void getEventsAfterRebuildsEventsFromDbForOldPositions() {
+    // given
+    long start = eventRing.getLastPosition();
+    for (long entityId = 1; entityId <= 3; entityId++) {
+      eventRing.append(new MessagePostedEvent(UUID.randomUUID(), "Message " + entityId, entityId, "timmy"), start + entityId);
+    }
+    Message repeated = new Message(UUID.randomUUID(), "Hello", new Date(), 5L, UUID.randomUUID(), "timmy", 3);
+    Message posted = new Message(UUID.randomUUID(), "Hi", new Date(), 4L, UUID.randomUUID(), "tommy", 1);
+    when(messageRepository.findByUpdatedGreaterThanEqualOrderByUpdatedDesc(any(Date.class), any(Pageable.class)))
+      .thenReturn(Arrays.asList(new MessageDoc(repeated), new MessageDoc(posted)));
+    // when
+    EventList events = eventCatchUpService.getEventsAfter(start, "bernd");
+    // then
+    assertEquals(3, events.getEvents().size());
+    assertEquals(posted.getEventUuid(), events.getEvents().get(0).getUuid());
+    assertEquals(repeated.getEventUuid(), events.getEvents().get(1).getUuid());
+    MessageRepeatedEvent repeatedEvent = (MessageRepeatedEvent) events.getEvents().get(2);
+    assertEquals(repeated.getEventUuid(), repeatedEvent.getOriginalMessageUUID());
+    assertEquals(3, repeatedEvent.getOccurCount());
+    assertEquals(eventRing.getLastPosition(), events.getPosition());
+  }
+
+  @Test
+  void getEventsAfterRequiresReloadIfTooManyMessagesChanged() {
+    // given
+    long start = eventRing.getLastPosition();
+    for (long entityId = 1; entityId <= 3; entityId++) {
+      eventRing.append(new MessagePostedEvent(UUID.randomUUID(), "Message " + entityId, entityId, "timmy"), start + entityId);
+    }
+    Message message = new Message(UUID.randomUUID(), "Hello", new Date(), 5L, UUID.randomUUID(), "timmy", 1);
+    when(messageRepository.findByUpdatedGreaterThanEqualOrderByUpdatedDesc(any(Date.class), any(Pageable.class)))
+      .thenReturn(Arrays.asList(new MessageDoc(message), new MessageDoc(message), new MessageDoc(message)));
+    // when
+    EventList events = eventCatchUpService.getEventsAfter(start, null);
+    // then
+    assertTrue(events.isReloadRequired());
+    assertTrue(events.getEvents().isEmpty());
+  }
+}
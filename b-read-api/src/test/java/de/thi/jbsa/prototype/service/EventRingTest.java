@@ -0,0 +1,152 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+
+class EventRingTest {
+
+  private static Event posted(long entityId) {
+    return new MessagePostedEvent(UUID.randomUUID(), "Message " + entityId, entityId, "timmy");
+  }
+
+  private static EventRing resumedRing(int capacity) {
+    EventRing ring = new EventRing(capacity);
+    ring.resume(ring.getLastPosition());
+    return ring;
+  }
+
+  @Test
+  void getAfterReturnsEventsAfterPositionInPages() {
+    // given
+    EventRing ring = resumedRing(10);
+    long start = ring.getLastPosition();
+    Event first = posted(1L);
+    Event second = posted(2L);
+    Event third = posted(3L);
+    ring.append(first, start + 1);
+    ring.append(second, start + 2);
+    ring.append(third, start + 3);
+    // when
+    EventRing.Slice page = ring.getAfter(start, event -> true, 2);
+    EventRing.Slice rest = ring.getAfter(page.getPosition(), event -> true, 2);
+    // then
+    assertEquals(Arrays.asList(first, second), page.getEvents());
+    assertTrue(page.isHasMore());
+    assertEquals(Arrays.asList(third), rest.getEvents());
+    assertFalse(rest.isHasMore());
+    assertEquals(start + 3, rest.getPosition());
+  }
+
+  @Test
+  void getAfterSkipsFilteredEvents() {
+    // given
+    EventRing ring = resumedRing(10);
+    long start = ring.getLastPosition();
+    Event first = posted(1L);
+    ring.append(first, start + 1);
+    ring.append(posted(2L), start + 2);
+    // when
+    EventRing.Slice slice = ring.getAfter(start, event -> event == first, 10);
+    // then
+    assertEquals(Arrays.asList(first), slice.getEvents());
+    assertEquals(start + 2, slice.getPosition());
+  }
+
+  @Test
+  void getAfterReturnsNullForPositionsNoLongerInRing() {
+    // given
+    EventRing ring = resumedRing(2);
+    long start = ring.getLastPosition();
+    ring.append(posted(1L), start + 1);
+    ring.append(posted(2L), start + 2);
+    ring.append(posted(3L), start + 3);
+    // then
+    assertNull(ring.getAfter(start, event -> true, 10));
+    assertEquals(2, ring.getAfter(start + 1, event -> true, 10).getEvents().size());
+  }
+
+  @Test
+  void lateEventsAreInsertedAtTheirPosition() {
+    // given
+    EventRing ring = resumedRing(10);
+    long start = ring.getLastPosition();
+    Event first = posted(1L);
+    Event second = posted(2L);
+    Event third = posted(3L);
+    // when: the second event comes from another instance after the third one
+    ring.append(first, start + 1);
+    ring.append(third, start + 3);
+    ring.append(second, start + 2);
+    ring.append(second, start + 2);
+    // then
+    assertEquals(Arrays.asList(first, second, third), ring.getAfter(start, event -> true, 10).getEvents());
+    assertEquals(Arrays.asList(third), ring.getAfter(start + 2, event -> true, 10).getEvents());
+    assertEquals(start + 3, ring.getLastPosition());
+  }
+
+  @Test
+  void lateEventBeforeTheOldestOneOfAFullRingIsDropped() {
+    // given
+    EventRing ring = resumedRing(2);
+    long start = ring.getLastPosition();
+    Event second = posted(2L);
+    Event third = posted(3L);
+    ring.append(second, start + 2);
+    ring.append(third, start + 3);
+    // when
+    ring.append(posted(1L), start + 1);
+    // then
+    assertNull(ring.getAfter(start, event -> true, 10));
+    assertEquals(Arrays.asList(third), ring.getAfter(start + 2, event -> true, 10).getEvents());
+  }
+
+  @Test
+  void suspendedRingIsCaughtUpWithFromDatabaseUntilResumed() {
+    // given
+    EventRing ring = resumedRing(10);
+    long start = ring.getLastPosition();
+    ring.append(posted(1L), start + 1);
+    Event afterResume = posted(3L);
+    // when
+    ring.suspend();
+    // then
+    assertNull(ring.getAfter(start, event -> true, 10));
+    // when: position 2 was reserved and sent while the subscription was down
+    ring.resume(start + 2);
+    ring.append(posted(2L), start + 2);
+    ring.append(afterResume, start + 3);
+    // then
+    assertNull(ring.getAfter(start + 1, event -> true, 10));
+    assertEquals(Arrays.asList(afterResume), ring.getAfter(start + 2, event -> true, 10).getEvents());
+  }
+
+  @Test
+  void newRingIsSuspendedUntilResumed() {
+    // given
+    EventRing ring = new EventRing(10);
+    // then
+    assertNull(ring.getAfter(ring.getLastPosition(), event -> true, 10));
+  }
+
+  @Test
+  void appendListenerIsCalledOnce() {
+    // given
+    EventRing ring = resumedRing(10);
+    long start = ring.getLastPosition();
+    AtomicInteger calls = new AtomicInteger();
+    ring.onNextAppend(calls::incrementAndGet);
+    // when
+    ring.append(posted(1L), start + 1);
+    ring.append(posted(2L), start + 2);
+    // then
+    assertEquals(1, calls.get());
+  }
+}
@@ -0,0 +1,112 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+
+class MessageReplayTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:replay;DB_CLOSE_DELAY=-1";
+
+  private Connection connection;
+
+  private MessageReplay messageReplay;
+
+  private final MessageRepository messageRepository = mock(MessageRepository.class);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private void insertPosted(long id, String content, Timestamp created)
+    throws Exception {
+    MessagePostedEvent event = new MessagePostedEvent(UUID.randomUUID(), content, null, "timmy");
+    try (PreparedStatement statement = connection.prepareStatement("insert into event_entity (id, value, created) values (?, ?, ?)")) {
+      statement.setLong(1, id);
+      statement.setString(2, objectMapper.writeValueAsString(event));
+      statement.setTimestamp(3, created);
+      statement.executeUpdate();
+    }
+  }
+
+  @Test
+  void projectKeepsRowsWithoutCreationTime()
+    throws Exception {
+    // given
+    Timestamp created = new Timestamp(1_000_000L);
+    insertPosted(1, "before the created column", null);
+    insertPosted(2, "with created", created);
+    List<List<Message>> written = new ArrayList<>();
+    doAnswer(invocation -> written.add(new ArrayList<>(invocation.getArgument(1))))
+      .when(messageRepository).applyAll(eq("messages_test"), anyCollection(), anyMap());
+    // when
+    long lastEventId = messageReplay.project(connection, "messages_test", 0, 2, false);
+    // then
+    assertEquals(2, lastEventId);
+    assertEquals(1, written.size());
+    assertNull(written.get(0).get(0).getCreated());
+    assertEquals(created.getTime(), written.get(0).get(1).getCreated().getTime());
+  }
+
+  @Test
+  void catchUpRescansOverlapBelowLastEvent()
+    throws Exception {
+    // given: event 3 was committed after 4 had been replayed
+    insertPosted(1, "first", null);
+    insertPosted(2, "second", null);
+    insertPosted(4, "fourth", null);
+    long lastEventId = messageReplay.project(connection, "messages_test", 0, 4, false);
+    insertPosted(3, "late", null);
+    List<String> written = new ArrayList<>();
+    doAnswer(invocation -> {
+      for (Object message : (Collection<?>) invocation.getArgument(1)) {
+        written.add(((Message) message).getContent());
+      }
+      return null;
+    }).when(messageRepository).applyAll(eq("messages_test"), anyCollection(), anyMap());
+    // when
+    long caughtUpTo = messageReplay.catchUp(connection, "messages_test", lastEventId, false);
+    // then
+    assertEquals(4, caughtUpTo);
+    assertTrue(written.contains("late"));
+  }
+
+  @BeforeEach
+  void setUp()
+    throws Exception {
+    connection = DriverManager.getConnection(JDBC_URL, "sa", "");
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("create table event_entity (id bigint primary key, value varchar(4000), created timestamp)");
+    }
+    messageReplay = new MessageReplay(messageRepository, null, mock(MongoTemplate.class), JDBC_URL, "sa", "", 10, 10, 5);
+  }
+
+  @AfterEach
+  void tearDown()
+    throws Exception {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("drop table event_entity");
+    }
+    connection.close();
+  }
+}
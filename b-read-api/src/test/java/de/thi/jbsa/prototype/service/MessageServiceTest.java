@@ -0,0 +1,185 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import javax.jms.JMSException;
+import javax.jms.Topic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.event.Event;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.model.model.MessagePage;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+
+class MessageServiceTest {
+
+  private JmsTemplate jmsTemplate;
+
+  private MessageRepository messageRepository;
+
+  private MessageService messageService;
+
+  private PositionSequence positionSequence;
+
+  private RecentMessageWindow recentMessageWindow;
+
+  private Topic topic;
+
+  private static List<MessageDoc> docs(long fromEntityId, int count) {
+    List<MessageDoc> docs = new ArrayList<>();
+    for (long entityId = fromEntityId; entityId > fromEntityId - count; entityId--) {
+      docs.add(new MessageDoc(new Message(UUID.randomUUID(), "Message " + entityId, new Date(), entityId, UUID.randomUUID(), "timmy", 1)));
+    }
+    return docs;
+  }
+
+  @BeforeEach
+  void setUp() {
+    messageRepository = mock(MessageRepository.class);
+    jmsTemplate = mock(JmsTemplate.class);
+    topic = mock(Topic.class);
+    recentMessageWindow = new RecentMessageWindow(10);
+    positionSequence = mock(PositionSequence.class);
+    messageService = new MessageService(messageRepository, jmsTemplate, topic, recentMessageWindow, positionSequence, 3);
+  }
+
+  @Test
+  void getHistoryFullPageHasCursor() {
+    // given
+    when(messageRepository.findHistory(isNull(), eq("timmy"), isNull(), isNull(), eq(3))).thenReturn(docs(10, 3));
+    // when
+    MessagePage page = messageService.getHistory(null, "timmy", null, null, 50);
+    // then
+    assertEquals(3, page.getMessages().size());
+    assertEquals(8L, page.getNextBefore());
+  }
+
+  @Test
+  void getHistoryLastPageHasNoCursor() {
+    // given
+    when(messageRepository.findHistory(eq(8L), isNull(), any(), any(), anyInt())).thenReturn(docs(7, 2));
+    // when
+    MessagePage page = messageService.getHistory(8L, null, new Date(0), new Date(), 3);
+    // then
+    assertEquals(2, page.getMessages().size());
+    assertNull(page.getNextBefore());
+  }
+
+  @Test
+  void getHistoryLimitIsAtLeastOne() {
+    // when
+    messageService.getHistory(null, null, null, null, 0);
+    // then
+    verify(messageRepository).findHistory(null, null, null, null, 1);
+  }
+
+  @Test
+  void handleMentionEventIsSentWithRecipient()
+    throws JMSException {
+    // given
+    MentionEvent event = new MentionEvent(UUID.randomUUID(), "bernd", Collections.singletonList(6), "timmy");
+    when(positionSequence.reserve(1)).thenReturn(42L);
+
+    // when
+    messageService.handleMentionEvent(event);
+
+    // then
+    ArgumentCaptor<MessagePostProcessor> postProcessorCaptor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+    verify(jmsTemplate).convertAndSend(eq(topic), eq(event), postProcessorCaptor.capture());
+    javax.jms.Message message = mock(javax.jms.Message.class);
+    postProcessorCaptor.getValue().postProcessMessage(message);
+    verify(message).setStringProperty(MentionEvent.RECIPIENT_PROPERTY, "bernd");
+    verify(message).setLongProperty(EventList.POSITION_PROPERTY, 42L);
+  }
+
+  @Test
+  void getlast10MessagesQueriesTheDatabaseUntilWarmedUp() {
+    // given
+    when(messageRepository.findByOrderByMessage_EntityIdDesc(any())).thenReturn(docs(12L, 10));
+    // when
+    List<Message> messages = messageService.getlast10Messages();
+    // then
+    assertEquals(10, messages.size());
+    assertEquals(3L, messages.get(0).getEntityId());
+    assertEquals(12L, messages.get(9).getEntityId());
+    assertFalse(recentMessageWindow.isWarmedUp());
+  }
+
+  @Test
+  void handleMessagePostedEventUpsertsByEventUuid() {
+    // given
+    MessagePostedEvent event = new MessagePostedEvent(UUID.randomUUID(), "Hello", 4L, "timmy");
+    Message stored = new Message(event.getCmdUuid(), "Hello", new Date(), 4L, event.getUuid(), "timmy", 2);
+    when(messageRepository.upsertPosted(any(Message.class))).thenReturn(new MessageDoc(stored));
+    recentMessageWindow.warmUp(Collections.emptyList());
+    // when
+    messageService.handleMessagePostedEvent(event);
+    // then
+    ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+    verify(messageRepository).upsertPosted(messageCaptor.capture());
+    assertEquals(event.getUuid(), messageCaptor.getValue().getEventUuid());
+    assertEquals(4L, messageCaptor.getValue().getEntityId());
+    // a repeat consumed before the message is part of the stored document
+    assertEquals(2, messageService.getlast10Messages().get(0).getOccurCount());
+    verify(jmsTemplate).convertAndSend(eq(topic), eq(event), any(MessagePostProcessor.class));
+  }
+
+  @Test
+  void handleMessageRepeatedEventAppliesRepeatAtomically() {
+    // given
+    MessageRepeatedEvent event = MessageRepeatedEvent.builder()
+                                                     .occurCount(3)
+                                                     .originalMessageUUID(UUID.randomUUID())
+                                                     .currentMessageEventUUID(UUID.randomUUID())
+                                                     .build();
+    // when
+    messageService.handleMessageRepeatedEvent(event);
+    // then
+    verify(messageRepository).applyRepeat(event.getOriginalMessageUUID(), 3);
+    verify(messageRepository, never()).save(any());
+    verify(jmsTemplate).convertAndSend(eq(topic), eq(event), any(MessagePostProcessor.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void projectAllWritesBatchInOneBulk() {
+    // given
+    MessagePostedEvent posted = new MessagePostedEvent(UUID.randomUUID(), "Hello @tommy", 4L, "timmy");
+    MentionEvent mention = new MentionEvent(posted.getUuid(), "tommy", Collections.singletonList(6), "timmy");
+    UUID repeatedUuid = UUID.randomUUID();
+    MessageRepeatedEvent repeatedTwice = MessageRepeatedEvent.builder().occurCount(2).originalMessageUUID(repeatedUuid).build();
+    MessageRepeatedEvent repeatedThrice = MessageRepeatedEvent.builder().occurCount(3).originalMessageUUID(repeatedUuid).build();
+    // when
+    List<Event> eventsToSend = messageService.projectAll(Arrays.asList(posted, repeatedThrice, mention, repeatedTwice));
+    // then
+    ArgumentCaptor<Collection<Message>> postedCaptor = ArgumentCaptor.forClass(Collection.class);
+    verify(messageRepository).applyAll(postedCaptor.capture(), eq(Collections.singletonMap(repeatedUuid, 3)));
+    assertEquals(posted.getUuid(), postedCaptor.getValue().iterator().next().getEventUuid());
+    assertEquals(Arrays.asList(posted, repeatedThrice, mention, repeatedTwice), eventsToSend);
+    verify(jmsTemplate, never()).convertAndSend(any(Topic.class), any(Object.class));
+  }
+}
@@ -0,0 +1,66 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import com.mongodb.client.result.UpdateResult;
+
+class PositionSequenceTest {
+
+  private static Document sequence(long value) {
+    return new Document("_id", "ui-position").append("value", value);
+  }
+
+  @Test
+  void reserveReturnsTheFirstOfTheNextPositions() {
+    // given
+    MongoOperations mongoOperations = mock(MongoOperations.class);
+    long last = System.currentTimeMillis() * 1000 + 1_000_000;
+    when(mongoOperations.findById(any(), eq(Document.class), eq(PositionSequence.COLLECTION))).thenReturn(sequence(last));
+    when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(PositionSequence.COLLECTION)))
+      .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    // when
+    long first = new PositionSequence(mongoOperations).reserve(3);
+    // then
+    assertEquals(last + 1, first);
+    verify(mongoOperations).updateFirst(any(Query.class), eq(Update.update("value", last + 3)), eq(PositionSequence.COLLECTION));
+  }
+
+  @Test
+  void reserveReadsTheSequenceAgainIfAnotherInstanceChangedIt() {
+    // given
+    MongoOperations mongoOperations = mock(MongoOperations.class);
+    long last = System.currentTimeMillis() * 1000 + 1_000_000;
+    when(mongoOperations.findById(any(), eq(Document.class), eq(PositionSequence.COLLECTION)))
+      .thenReturn(sequence(last), sequence(last + 1));
+    when(mongoOperations.updateFirst(any(Query.class), any(Update.class), eq(PositionSequence.COLLECTION)))
+      .thenReturn(UpdateResult.acknowledged(0, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+    // when
+    long first = new PositionSequence(mongoOperations).reserve(1);
+    // then
+    assertEquals(last + 2, first);
+    verify(mongoOperations, times(2)).updateFirst(any(Query.class), any(Update.class), eq(PositionSequence.COLLECTION));
+  }
+
+  @Test
+  void reserveStartsAtTheCurrentTime() {
+    // given
+    MongoOperations mongoOperations = mock(MongoOperations.class);
+    long now = System.currentTimeMillis() * 1000;
+    // when
+    long first = new PositionSequence(mongoOperations).reserve(1);
+    // then
+    assertTrue(first >= now);
+    verify(mongoOperations).insert(any(Document.class), eq(PositionSequence.COLLECTION));
+  }
+}
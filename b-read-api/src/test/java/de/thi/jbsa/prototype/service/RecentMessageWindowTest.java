@@ -0,0 +1,90 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import de.thi.jbsa.prototype.model.model.Message;
+
+class RecentMessageWindowTest {
+
+  private final RecentMessageWindow recentMessageWindow = new RecentMessageWindow(3);
+
+  private static List<Long> entityIds(List<Message> messages) {
+    return messages.stream().map(Message::getEntityId).collect(Collectors.toList());
+  }
+
+  private static Message message(long entityId) {
+    return new Message(UUID.randomUUID(), "Message " + entityId, new Date(), entityId, UUID.randomUUID(), "timmy", 1);
+  }
+
+  @Test
+  void messagePostedKeepsLatestInEntityIdOrder() {
+    // when
+    recentMessageWindow.messagePosted(message(2));
+    recentMessageWindow.messagePosted(message(4));
+    recentMessageWindow.messagePosted(message(1));
+    recentMessageWindow.messagePosted(message(3));
+    recentMessageWindow.messagePosted(message(0));
+    // then
+    assertEquals(Arrays.asList(2L, 3L, 4L), entityIds(recentMessageWindow.getLatest(10)));
+    assertEquals(Arrays.asList(3L, 4L), entityIds(recentMessageWindow.getLatest(2)));
+  }
+
+  @Test
+  void messagePostedIgnoresRedelivery() {
+    // given
+    Message message = message(1);
+    recentMessageWindow.messagePosted(message);
+    // when
+    recentMessageWindow.messagePosted(message);
+    // then
+    assertEquals(1, recentMessageWindow.getLatest(10).size());
+  }
+
+  @Test
+  void messageRepeatedReplacesMessage() {
+    // given
+    Message message = message(1);
+    recentMessageWindow.messagePosted(message);
+    List<Message> before = recentMessageWindow.getLatest(10);
+    // when
+    recentMessageWindow.messageRepeated(message.getEventUuid(), 3);
+    recentMessageWindow.messageRepeated(message.getEventUuid(), 2);
+    // then
+    assertEquals(3, recentMessageWindow.getLatest(10).get(0).getOccurCount());
+    assertEquals(1, before.get(0).getOccurCount(), "snapshots must not change");
+    assertEquals(1, message.getOccurCount());
+  }
+
+  @Test
+  void snapshotsAreImmutable() {
+    recentMessageWindow.messagePosted(message(1));
+    assertThrows(UnsupportedOperationException.class, () -> recentMessageWindow.getLatest(10).add(message(2)));
+  }
+
+  @Test
+  void warmUpMergesWithConsumedMessages() {
+    // given
+    Message consumed = message(5);
+    recentMessageWindow.messagePosted(consumed);
+    Message loaded = message(4);
+    loaded.setOccurCount(2);
+    assertFalse(recentMessageWindow.isWarmedUp());
+    // when
+    recentMessageWindow.warmUp(Arrays.asList(consumed, loaded));
+    // then
+    assertTrue(recentMessageWindow.isWarmedUp());
+    List<Message> latest = recentMessageWindow.getLatest(10);
+    assertEquals(Arrays.asList(4L, 5L), entityIds(latest));
+    assertEquals(2, latest.get(0).getOccurCount());
+    assertSame(latest, recentMessageWindow.getLatest(10));
+  }
+}
@@ -2,8 +2,10 @@ package de.thi.jbsa.prototype;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BWriteApiApplication {
 
   public static void main(String[] args) {
@@ -2,8 +2,12 @@ package de.thi.jbsa.prototype.config;
 
 import javax.jms.Queue;
 import org.apache.activemq.command.ActiveMQQueue;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import de.thi.jbsa.prototype.codec.BinaryMessageConverter;
 
 /**
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-02-18
@@ -16,4 +20,9 @@ public class JmsConfig {
   public Queue queue() {
     return new ActiveMQQueue("cmd-queue");
   }
+
+  @Bean
+  public MessageConverter messageConverter(@Value("${studychat.jms.codec:binary}") String codec) {
+    return "java".equalsIgnoreCase(codec) ? new SimpleMessageConverter() : new BinaryMessageConverter();
+  }
 }
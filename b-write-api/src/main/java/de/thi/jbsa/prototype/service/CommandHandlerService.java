@@ -1,10 +1,22 @@
 package de.thi.jbsa.prototype.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
 import javax.jms.Queue;
+import javax.jms.Session;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.stereotype.Service;
 import de.thi.jbsa.prototype.model.cmd.Cmd;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.java.Log;
 
 /**
@@ -12,15 +24,120 @@ import lombok.extern.java.Log;
  */
 @Service
 @Log
-@RequiredArgsConstructor
 public class CommandHandlerService {
 
+  /**
+   * ActiveMQ delivers all messages of a group to the same consumer, so the commands of a user stay in order
+   */
+  static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
+  private final Counter duplicateCounter;
+
+  private final IdempotencyCache idempotencyCache;
+
   private final JmsTemplate jmsTemplate;
 
+  private final Counter newCommandCounter;
+
   private final Queue queue;
 
+  private volatile JmsTemplate transactedJmsTemplate;
+
+  public CommandHandlerService(
+    JmsTemplate jmsTemplate,
+    Queue queue,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.cmd.idempotency.capacity:100000}") int idempotencyCapacity,
+    @Value("${studychat.cmd.idempotency.ttl-ms:600000}") long idempotencyTtlMillis) {
+    this.jmsTemplate = jmsTemplate;
+    this.queue = queue;
+    this.idempotencyCache = new IdempotencyCache(idempotencyCapacity, idempotencyTtlMillis);
+    this.duplicateCounter = meterRegistry.counter("studychat.cmd.idempotency", "result", "hit");
+    this.newCommandCounter = meterRegistry.counter("studychat.cmd.idempotency", "result", "miss");
+    meterRegistry.gauge("studychat.cmd.idempotency.size", idempotencyCache, IdempotencyCache::size);
+  }
+
+  /**
+   * The uuid of a command sent with an idempotency key: the same key of the same user always gives the same uuid, so a retry
+   * is recognized here and by the domain handler. These name-based uuids (version 3) never collide with random ones.
+   */
+  public static UUID idempotentUuid(String userId, String idempotencyKey) {
+    return UUID.nameUUIDFromBytes((userId + '\n' + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void addGroupId(Message message, Cmd cmd)
+    throws JMSException {
+    if (cmd.getUserId() != null) {
+      message.setStringProperty(GROUP_ID_PROPERTY, cmd.getUserId());
+    }
+  }
+
+  private JmsTemplate getTransactedJmsTemplate() {
+    if (transactedJmsTemplate == null) {
+      // same connection and converter as the default template, but all sends of a batch are committed together
+      JmsTemplate template = new JmsTemplate(Objects.requireNonNull(jmsTemplate.getConnectionFactory()));
+      template.setMessageConverter(jmsTemplate.getMessageConverter());
+      template.setSessionTransacted(true);
+      transactedJmsTemplate = template;
+    }
+    return transactedJmsTemplate;
+  }
+
+  /**
+   * Forgets the command, so a retry is sent after all, e.g. if it couldn't be sent
+   */
+  public void forget(Cmd cmd) {
+    idempotencyCache.remove(cmd.getUuid());
+  }
+
+  /**
+   * @return {@code true} if the command is a retry of a command handled within the TTL; otherwise it is remembered. Commands
+   * without an idempotency key are never duplicates.
+   */
+  public boolean isDuplicate(Cmd cmd) {
+    if (cmd.getUuid().version() != 3) {
+      return false;
+    }
+    if (idempotencyCache.add(cmd.getUuid())) {
+      newCommandCounter.increment();
+      return false;
+    }
+    duplicateCounter.increment();
+    log.info("Dropping retried cmd " + cmd.getUuid());
+    return true;
+  }
+
   public void handleCommand(Cmd cmd) {
-    jmsTemplate.convertAndSend(queue, cmd);
+    jmsTemplate.convertAndSend(queue, cmd, message -> {
+      addGroupId(message, cmd);
+      return message;
+    });
     log.info("Sent cmd to queue " + cmd);
   }
+
+  /**
+   * Sends the commands in one transacted session, the broker acknowledges the whole batch with a single commit.
+   */
+  public void handleCommands(List<? extends Cmd> cmds) {
+    if (cmds.isEmpty()) {
+      return;
+    }
+    JmsTemplate template = getTransactedJmsTemplate();
+    MessageConverter messageConverter = Objects.requireNonNull(template.getMessageConverter());
+    template.execute((Session session) -> {
+      MessageProducer producer = session.createProducer(queue);
+      try {
+        for (Cmd cmd : cmds) {
+          Message message = messageConverter.toMessage(cmd, session);
+          addGroupId(message, cmd);
+          producer.send(message);
+        }
+      } finally {
+        JmsUtils.closeMessageProducer(producer);
+      }
+      JmsUtils.commitIfNecessary(session);
+      return null;
+    }, true);
+    log.info("Sent " + cmds.size() + " cmds to queue");
+  }
 }
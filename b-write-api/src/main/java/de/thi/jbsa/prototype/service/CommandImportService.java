@@ -0,0 +1,236 @@
+package de.thi.jbsa.prototype.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+
+/**
+ * Imports commands from newline-delimited JSON, e.g. the history of another chat or recorded test traffic.
+ * <p>
+ * The body is read line by line and never held as a whole, each line is one {@link PostMessageCmd}. The valid commands are
+ * sent in transacted batches of {@code batch-size} on the calling thread, so a slow broker slows the import down instead of
+ * filling the buffer of the {@link CommandSubmissionService}. The result of a line is written once its batch is committed,
+ * the last line of the response sums the import up. A line longer than {@code max-line-length} characters is rejected
+ * without keeping more of it, the import goes on with the next line.
+ */
+@Service
+@Log
+public class CommandImportService {
+
+  @lombok.Value
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static class LineResult {
+
+    long line;
+
+    UUID uuid;
+
+    boolean accepted;
+
+    String error;
+  }
+
+  @lombok.Value
+  public static class Summary {
+
+    long accepted;
+
+    long rejected;
+
+    long millis;
+
+    double commandsPerSecond;
+  }
+
+  private static final class Counts {
+
+    private long accepted;
+
+    private long rejected;
+  }
+
+  public static final String NDJSON = "application/x-ndjson";
+
+  private static final byte[] NEWLINE = {'\n'};
+
+  private final Counter acceptedCounter;
+
+  private final int batchSize;
+
+  private final CommandHandlerService commandHandlerService;
+
+  private final int maxLineLength;
+
+  private final ObjectReader cmdReader;
+
+  private final Counter rejectedCounter;
+
+  private final ObjectWriter resultWriter;
+
+  public CommandImportService(
+    CommandHandlerService commandHandlerService,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.cmd.import.batch-size:500}") int batchSize,
+    @Value("${studychat.cmd.import.max-line-length:65536}") int maxLineLength) {
+    this.commandHandlerService = commandHandlerService;
+    this.batchSize = batchSize;
+    this.maxLineLength = maxLineLength;
+    ObjectMapper objectMapper = new ObjectMapper();
+    this.cmdReader = objectMapper.readerFor(PostMessageCmd.class);
+    this.resultWriter = objectMapper.writer();
+    this.acceptedCounter = meterRegistry.counter("studychat.cmd.import.accepted");
+    this.rejectedCounter = meterRegistry.counter("studychat.cmd.import.rejected");
+  }
+
+  private static String validate(PostMessageCmd cmd) {
+    if (cmd.getUserId() == null || cmd.getUserId().isEmpty()) {
+      return "userId is missing";
+    }
+    if (cmd.getContent() == null) {
+      return "content is missing";
+    }
+    return null;
+  }
+
+  /**
+   * @param in  one command per line, empty lines are skipped
+   * @param out gets one {@link LineResult} per command line and the {@link Summary}, newline-delimited
+   */
+  public Summary importCommands(InputStream in, OutputStream out)
+    throws IOException {
+    long start = System.nanoTime();
+    Counts counts = new Counts();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    List<PostMessageCmd> batch = new ArrayList<>(batchSize);
+    List<Long> batchLines = new ArrayList<>(batchSize);
+    long lineNumber = 0;
+    StringBuilder line = new StringBuilder();
+    while (readLine(reader, line)) {
+      lineNumber++;
+      if (line.length() > maxLineLength) {
+        writeResult(out, new LineResult(lineNumber, null, false, "line is longer than " + maxLineLength + " characters"), counts);
+        continue;
+      }
+      String json = line.toString();
+      if (json.trim().isEmpty()) {
+        continue;
+      }
+      PostMessageCmd cmd;
+      try {
+        cmd = cmdReader.readValue(json);
+      } catch (JsonProcessingException e) {
+        writeResult(out, new LineResult(lineNumber, null, false, e.getOriginalMessage()), counts);
+        continue;
+      }
+      String error = validate(cmd);
+      if (error != null) {
+        writeResult(out, new LineResult(lineNumber, cmd.getUuid(), false, error), counts);
+        continue;
+      }
+      batch.add(cmd);
+      batchLines.add(lineNumber);
+      if (batch.size() == batchSize) {
+        sendBatch(batch, batchLines, out, counts);
+      }
+    }
+    sendBatch(batch, batchLines, out, counts);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Summary summary = new Summary(counts.accepted, counts.rejected, millis, counts.accepted * 1000.0 / Math.max(1, millis));
+    write(out, summary);
+    out.flush();
+    log.info("Imported " + summary.getAccepted() + " commands (" + Math.round(summary.getCommandsPerSecond()) + "/s), rejected "
+             + summary.getRejected());
+    return summary;
+  }
+
+  /**
+   * Reads the next line into the builder, without the line break. Of a line longer than {@code max-line-length} characters
+   * only one character more is kept, the rest is skipped.
+   *
+   * @return {@code false} at the end of the input
+   */
+  private boolean readLine(BufferedReader reader, StringBuilder line)
+    throws IOException {
+    line.setLength(0);
+    int c = reader.read();
+    if (c == -1) {
+      return false;
+    }
+    // a \r is held back until the next character shows whether it belongs to a \r\n line break
+    boolean carriageReturn = false;
+    while (c != -1 && c != '\n') {
+      if (carriageReturn) {
+        appendUpToLimit(line, '\r');
+      }
+      carriageReturn = c == '\r';
+      if (!carriageReturn) {
+        appendUpToLimit(line, (char) c);
+      }
+      c = reader.read();
+    }
+    return true;
+  }
+
+  private void appendUpToLimit(StringBuilder line, char c) {
+    if (line.length() <= maxLineLength) {
+      line.append(c);
+    }
+  }
+
+  private void sendBatch(List<PostMessageCmd> batch, List<Long> batchLines, OutputStream out, Counts counts)
+    throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    String error = null;
+    try {
+      commandHandlerService.handleCommands(batch);
+    } catch (RuntimeException e) {
+      // the batch is rolled back as a whole, the client sends the rejected lines again
+      log.warning("Sending " + batch.size() + " imported commands failed: " + e);
+      error = "sending failed: " + e.getMessage();
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      writeResult(out, new LineResult(batchLines.get(i), batch.get(i).getUuid(), error == null, error), counts);
+    }
+    out.flush();
+    batch.clear();
+    batchLines.clear();
+  }
+
+  private void write(OutputStream out, Object value)
+    throws IOException {
+    out.write(resultWriter.writeValueAsBytes(value));
+    out.write(NEWLINE);
+  }
+
+  private void writeResult(OutputStream out, LineResult result, Counts counts)
+    throws IOException {
+    if (result.isAccepted()) {
+      counts.accepted++;
+      acceptedCounter.increment();
+    } else {
+      counts.rejected++;
+      rejectedCounter.increment();
+    }
+    write(out, result);
+  }
+}
@@ -0,0 +1,250 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.stereotype.Service;
+import de.thi.jbsa.prototype.model.cmd.Cmd;
+import lombok.extern.java.Log;
+
+/**
+ * Entry point for commands received by the web layer.
+ * <p>
+ * In {@code async} mode (default) the commands are put into a bounded in-memory buffer and the request thread returns
+ * immediately. A background thread drains the buffer and sends up to {@code batch-size} commands in one transacted JMS
+ * session. A full buffer rejects further commands until the broker catches up. In {@code sync} mode every command is sent
+ * on the calling thread, as before.
+ * <p>
+ * A batch is retried as long as the broker fails, other failures only {@code max-retries} times. Commands which can't be
+ * converted to a message are dropped, the rest of their batch is sent one by one.
+ */
+@Service
+@Log
+public class CommandSubmissionService {
+
+  public enum Submission {
+    /**
+     * The command is on the command queue
+     */
+    SENT,
+    /**
+     * The command is buffered and will be sent shortly
+     */
+    QUEUED,
+    /**
+     * The buffer is full, the command was dropped
+     */
+    REJECTED,
+    /**
+     * The command is a retry of one which was already submitted, it was dropped
+     */
+    DUPLICATE,
+    /**
+     * The admission refused the command, e.g. because of the rate limit of the user, it was dropped
+     */
+    NOT_ADMITTED
+  }
+
+  @lombok.Value
+  public static class SubmissionResult {
+
+    Submission submission;
+
+    /**
+     * Time in ns until the admission would accept the command, 0 unless {@link Submission#NOT_ADMITTED}
+     */
+    long retryAfterNanos;
+  }
+
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  private final boolean async;
+
+  private final int batchSize;
+
+  private final BlockingQueue<Cmd> buffer;
+
+  private final CommandHandlerService commandHandlerService;
+
+  private final long lingerMillis;
+
+  private final int maxRetries;
+
+  private volatile boolean running;
+
+  private Thread sender;
+
+  public CommandSubmissionService(
+    CommandHandlerService commandHandlerService,
+    @Value("${studychat.cmd.submit-mode:async}") String submitMode,
+    @Value("${studychat.cmd.buffer.capacity:10000}") int capacity,
+    @Value("${studychat.cmd.buffer.batch-size:100}") int batchSize,
+    @Value("${studychat.cmd.buffer.linger-ms:5}") long lingerMillis,
+    @Value("${studychat.cmd.buffer.max-retries:5}") int maxRetries) {
+    this.commandHandlerService = commandHandlerService;
+    this.async = "async".equalsIgnoreCase(submitMode);
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.batchSize = batchSize;
+    this.lingerMillis = lingerMillis;
+    this.maxRetries = maxRetries;
+  }
+
+  public int getBufferedCount() {
+    return buffer.size();
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  private List<Cmd> nextBatch()
+    throws InterruptedException {
+    Cmd first = buffer.poll(100, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return null;
+    }
+    List<Cmd> batch = new ArrayList<>(batchSize);
+    batch.add(first);
+    long lingerUntil = System.currentTimeMillis() + lingerMillis;
+    // wait a moment for more commands, one transaction for many commands is much cheaper than many for one each
+    while (batch.size() < batchSize) {
+      buffer.drainTo(batch, batchSize - batch.size());
+      long remaining = lingerUntil - System.currentTimeMillis();
+      if (batch.size() >= batchSize || remaining <= 0) {
+        break;
+      }
+      Cmd next = buffer.poll(remaining, TimeUnit.MILLISECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  private void drop(List<Cmd> batch, RuntimeException e) {
+    for (Cmd cmd : batch) {
+      log.severe("Dropping cmd which cannot be sent " + cmd + ": " + e);
+      // the client's retry of a dropped command has to go through
+      commandHandlerService.forget(cmd);
+    }
+  }
+
+  /**
+   * Sends the batch, broker failures are retried until the broker is back
+   */
+  private void send(List<Cmd> batch)
+    throws InterruptedException {
+    int failures = 0;
+    while (true) {
+      try {
+        commandHandlerService.handleCommands(batch);
+        return;
+      } catch (MessageConversionException e) {
+        // retrying doesn't help, the other commands of the batch are sent one by one
+        if (batch.size() == 1) {
+          drop(batch, e);
+        } else {
+          for (Cmd cmd : batch) {
+            send(Collections.singletonList(cmd));
+          }
+        }
+        return;
+      } catch (JmsException e) {
+        // keep the order: the batch is retried until the broker is back, meanwhile the buffer applies the back-pressure
+        log.severe("Sending " + batch.size() + " commands failed, retrying: " + e);
+      } catch (RuntimeException e) {
+        if (++failures > maxRetries) {
+          drop(batch, e);
+          return;
+        }
+        log.severe("Sending " + batch.size() + " commands failed, retry " + failures + " of " + maxRetries + ": " + e);
+      }
+      Thread.sleep(RETRY_DELAY_MILLIS);
+    }
+  }
+
+  private void sendBatches() {
+    while (running || !buffer.isEmpty()) {
+      try {
+        List<Cmd> batch = nextBatch();
+        if (batch != null) {
+          send(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!async) {
+      return;
+    }
+    running = true;
+    sender = new Thread(this::sendBatches, "cmd-sender");
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  @PreDestroy
+  public void stop()
+    throws InterruptedException {
+    running = false;
+    if (sender != null) {
+      // the remaining buffered commands are still sent
+      sender.join(10_000);
+    }
+  }
+
+  public Submission submit(Cmd cmd) {
+    return submit(cmd, admitted -> 0).getSubmission();
+  }
+
+  /**
+   * @param admission asked after the duplicate check, so a retry never costs the user e.g. a token of the rate limit. Returns
+   *                  0 to admit the command, otherwise the time in ns until it would be admitted.
+   */
+  public SubmissionResult submit(Cmd cmd, ToLongFunction<Cmd> admission) {
+    if (commandHandlerService.isDuplicate(cmd)) {
+      return new SubmissionResult(Submission.DUPLICATE, 0);
+    }
+    long retryAfterNanos = admission.applyAsLong(cmd);
+    if (retryAfterNanos > 0) {
+      // the client may send it again once admitted
+      commandHandlerService.forget(cmd);
+      return new SubmissionResult(Submission.NOT_ADMITTED, retryAfterNanos);
+    }
+    return new SubmissionResult(submitAdmitted(cmd), 0);
+  }
+
+  private Submission submitAdmitted(Cmd cmd) {
+    if (!async) {
+      try {
+        commandHandlerService.handleCommand(cmd);
+      } catch (RuntimeException e) {
+        commandHandlerService.forget(cmd);
+        throw e;
+      }
+      return Submission.SENT;
+    }
+    if (!running || !buffer.offer(cmd)) {
+      log.warning("Command buffer is full, rejecting " + cmd);
+      // the client retries it later
+      commandHandlerService.forget(cmd);
+      return Submission.REJECTED;
+    }
+    return Submission.QUEUED;
+  }
+}
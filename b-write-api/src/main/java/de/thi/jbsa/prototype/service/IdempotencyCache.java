@@ -0,0 +1,81 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+import lombok.AllArgsConstructor;
+
+/**
+ * The uuids of the recently handled commands, to drop their retries.
+ * <p>
+ * An entry expires {@code ttl} after it was added. Beyond {@code capacity} entries the eldest ones are dropped early. All
+ * entries live equally long, so the order of insertion is also the order of expiry and a queue finds the entries to evict.
+ * Eviction is best effort under concurrency, the domain handler checks the command uuids again.
+ */
+class IdempotencyCache {
+
+  @AllArgsConstructor
+  private static final class Entry {
+
+    private final UUID uuid;
+
+    private final long expiresAt;
+  }
+
+  private final int capacity;
+
+  private final LongSupplier clock;
+
+  private final Map<UUID, Long> expiries = new ConcurrentHashMap<>();
+
+  private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  private final long ttlMillis;
+
+  IdempotencyCache(int capacity, long ttlMillis) {
+    this(capacity, ttlMillis, System::currentTimeMillis);
+  }
+
+  IdempotencyCache(int capacity, long ttlMillis, LongSupplier clock) {
+    this.capacity = capacity;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * @return {@code false} if the uuid was added before and hasn't expired yet
+   */
+  boolean add(UUID uuid) {
+    long now = clock.getAsLong();
+    evict(now);
+    long expiresAt = now + ttlMillis;
+    Long previousExpiry = expiries.putIfAbsent(uuid, expiresAt);
+    if (previousExpiry != null && (previousExpiry > now || !expiries.replace(uuid, previousExpiry, expiresAt))) {
+      return false;
+    }
+    insertionOrder.add(new Entry(uuid, expiresAt));
+    return true;
+  }
+
+  private void evict(long now) {
+    Entry eldest;
+    while ((eldest = insertionOrder.peek()) != null && (eldest.expiresAt <= now || expiries.size() >= capacity)) {
+      Entry evicted = insertionOrder.poll();
+      if (evicted != null) {
+        // a uuid added again after it expired has a new entry, which must stay
+        expiries.remove(evicted.uuid, evicted.expiresAt);
+      }
+    }
+  }
+
+  void remove(UUID uuid) {
+    expiries.remove(uuid);
+  }
+
+  int size() {
+    return expiries.size();
+  }
+}
@@ -0,0 +1,87 @@
+package de.thi.jbsa.prototype.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+
+/**
+ * Watches the depth of the command queue, new commands are shed while it is above {@code max-queue-depth}.
+ * <p>
+ * The broker doesn't tell JMS clients the size of a queue without the statistics plugin, and browsing a deep queue to count
+ * it costs the most when the broker is busy anyway. The size is polled from the Jolokia endpoint of the web console instead.
+ * Without an answer the depth is unknown and nothing is shed.
+ */
+@Component
+@Log
+public class QueueDepthMonitor {
+
+  private volatile long depth = -1;
+
+  private final long maxDepth;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final String queueSizeUrl;
+
+  private final RestTemplate restTemplate;
+
+  @Autowired
+  public QueueDepthMonitor(
+    RestTemplateBuilder restTemplateBuilder,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.cmd.shedding.queue-size-url:}") String queueSizeUrl,
+    @Value("${studychat.cmd.shedding.console-user:admin}") String consoleUser,
+    @Value("${studychat.cmd.shedding.console-password:admin}") String consolePassword,
+    @Value("${studychat.cmd.shedding.max-queue-depth:50000}") long maxDepth) {
+    this(restTemplateBuilder.basicAuthentication(consoleUser, consolePassword)
+                            .setConnectTimeout(Duration.ofSeconds(1))
+                            .setReadTimeout(Duration.ofSeconds(1))
+                            .build(), meterRegistry, queueSizeUrl, maxDepth);
+  }
+
+  QueueDepthMonitor(RestTemplate restTemplate, MeterRegistry meterRegistry, String queueSizeUrl, long maxDepth) {
+    this.restTemplate = restTemplate;
+    this.queueSizeUrl = queueSizeUrl;
+    this.maxDepth = maxDepth;
+    meterRegistry.gauge("studychat.cmd.queue.depth", this, QueueDepthMonitor::getDepth);
+  }
+
+  /**
+   * @return the last observed number of commands on the queue, -1 if unknown
+   */
+  public long getDepth() {
+    return depth;
+  }
+
+  public boolean isOverloaded() {
+    return depth >= maxDepth;
+  }
+
+  @Scheduled(fixedDelayString = "${studychat.cmd.shedding.poll-interval-ms:1000}")
+  public void poll() {
+    if (queueSizeUrl.isEmpty()) {
+      return;
+    }
+    try {
+      // Jolokia answers with text/plain
+      String response = restTemplate.getForObject(queueSizeUrl, String.class);
+      JsonNode value = response == null ? null : objectMapper.readTree(response).get("value");
+      depth = value != null && value.isNumber() ? value.asLong() : -1;
+    } catch (RestClientException | IOException e) {
+      if (depth >= 0) {
+        log.warning("Depth of the command queue is unknown: " + e);
+      }
+      depth = -1;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * A token bucket per user: a user may send {@code burst} commands at once and {@code rate-per-second} on average.
+ * <p>
+ * A bucket is only the time at which it would be full again (GCRA), so taking a token is a single compare-and-set. The
+ * buckets are spread over stripes by user id. A stripe is swept for full buckets by the thread which uses it once the refill
+ * time has passed, so the table only holds the recently active users. A sweep racing with a request of the same user may
+ * grant that user one extra command.
+ */
+@Component
+public class UserRateLimiter {
+
+  private static final class Stripe {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextSweep;
+
+    private Stripe(long nextSweep) {
+      this.nextSweep = new AtomicLong(nextSweep);
+    }
+  }
+
+  private final long burstNanos;
+
+  private final LongSupplier clock;
+
+  private final long intervalNanos;
+
+  private final Counter rejectedCounter;
+
+  private final Stripe[] stripes;
+
+  private final long sweepIntervalNanos;
+
+  public UserRateLimiter(
+    MeterRegistry meterRegistry,
+    @Value("${studychat.cmd.rate-limit.rate-per-second:5}") double ratePerSecond,
+    @Value("${studychat.cmd.rate-limit.burst:20}") int burst,
+    @Value("${studychat.cmd.rate-limit.stripes:16}") int stripeCount) {
+    this(meterRegistry, ratePerSecond, burst, stripeCount, System::nanoTime);
+  }
+
+  UserRateLimiter(MeterRegistry meterRegistry, double ratePerSecond, int burst, int stripeCount, LongSupplier clock) {
+    this.clock = clock;
+    this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    this.burstNanos = intervalNanos * burst;
+    this.sweepIntervalNanos = Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1));
+    // a power of two, so the stripe is found by a mask
+    this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+    long now = clock.getAsLong();
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(now + sweepIntervalNanos);
+    }
+    this.rejectedCounter = meterRegistry.counter("studychat.cmd.rate-limit.rejected");
+    meterRegistry.gauge("studychat.cmd.rate-limit.users", Tags.empty(), this, UserRateLimiter::size);
+  }
+
+  /**
+   * Takes a token of the user if there is one.
+   *
+   * @return 0 if the user may send the command, otherwise the time in ns until the next token
+   */
+  public long acquire(String userId) {
+    long now = clock.getAsLong();
+    String key = String.valueOf(userId);
+    int hash = key.hashCode();
+    Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    sweepIfDue(stripe, now);
+    // a new bucket is full
+    AtomicLong bucket = stripe.buckets.computeIfAbsent(key, user -> new AtomicLong(now));
+    while (true) {
+      long fullAt = bucket.get();
+      long newFullAt = Math.max(fullAt, now) + intervalNanos;
+      long waitNanos = newFullAt - now - burstNanos;
+      if (waitNanos > 0) {
+        rejectedCounter.increment();
+        return waitNanos;
+      }
+      if (bucket.compareAndSet(fullAt, newFullAt)) {
+        return 0;
+      }
+    }
+  }
+
+  int size() {
+    return Arrays.stream(stripes).mapToInt(stripe -> stripe.buckets.size()).sum();
+  }
+
+  private void sweepIfDue(Stripe stripe, long now) {
+    long nextSweep = stripe.nextSweep.get();
+    if (now - nextSweep >= 0 && stripe.nextSweep.compareAndSet(nextSweep, now + sweepIntervalNanos)) {
+      // a full bucket is the same as none
+      stripe.buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+    }
+  }
+}
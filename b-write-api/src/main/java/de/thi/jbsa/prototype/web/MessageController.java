@@ -1,14 +1,25 @@
 package de.thi.jbsa.prototype.web;
 
+import java.io.IOException;
+import java.io.InputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
 import de.thi.jbsa.prototype.service.CommandHandlerService;
+import de.thi.jbsa.prototype.service.CommandImportService;
+import de.thi.jbsa.prototype.service.CommandSubmissionService;
+import de.thi.jbsa.prototype.service.CommandSubmissionService.SubmissionResult;
+import de.thi.jbsa.prototype.service.QueueDepthMonitor;
+import de.thi.jbsa.prototype.service.UserRateLimiter;
 import lombok.extern.java.Log;
 
 /**
@@ -19,16 +30,89 @@ import lombok.extern.java.Log;
 @Log
 public class MessageController {
 
-  private final CommandHandlerService commandHandlerService;
+  private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
-  public MessageController(CommandHandlerService commandHandlerService) {
-    this.commandHandlerService = commandHandlerService;
+  private final CommandImportService commandImportService;
+
+  private final CommandSubmissionService commandSubmissionService;
+
+  private final QueueDepthMonitor queueDepthMonitor;
+
+  private final String retryAfterSeconds;
+
+  private final String sheddingRetryAfterSeconds;
+
+  private final UserRateLimiter userRateLimiter;
+
+  public MessageController(
+    CommandSubmissionService commandSubmissionService,
+    CommandImportService commandImportService,
+    UserRateLimiter userRateLimiter,
+    QueueDepthMonitor queueDepthMonitor,
+    @Value("${studychat.cmd.buffer.retry-after-seconds:1}") String retryAfterSeconds,
+    @Value("${studychat.cmd.shedding.retry-after-seconds:5}") String sheddingRetryAfterSeconds) {
+    this.commandSubmissionService = commandSubmissionService;
+    this.commandImportService = commandImportService;
+    this.userRateLimiter = userRateLimiter;
+    this.queueDepthMonitor = queueDepthMonitor;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.sheddingRetryAfterSeconds = sheddingRetryAfterSeconds;
+  }
+
+  /**
+   * Bulk import of newline-delimited commands, the response is streamed with one result per line and a summary at the end.
+   * <p>
+   * The per-user rate limit doesn't apply on purpose: an import replays the history of many users at once and would be
+   * rejected line by line. The import is throttled by the broker instead, it sends its batches on the request thread, and
+   * shed like the single commands while the command queue is too deep.
+   */
+  @PostMapping(path = "messages/import", consumes = CommandImportService.NDJSON)
+  public void importMessages(InputStream body, HttpServletResponse response)
+    throws IOException {
+    if (queueDepthMonitor.isOverloaded()) {
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, sheddingRetryAfterSeconds);
+      return;
+    }
+    response.setContentType(CommandImportService.NDJSON);
+    commandImportService.importCommands(body, response.getOutputStream());
   }
 
+  /**
+   * @param idempotencyKey chosen by the client and sent again with every retry, the retries are dropped
+   * @return the command with its uuid, 200 if it is already on the queue or a retry, 202 if it is buffered, 429 if the user
+   * sends too many commands and 503 if the buffer is full or the command queue too deep
+   */
   @PostMapping(path = "message", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<PostMessageCmd> publish(@RequestBody final PostMessageCmd cmd) {
+  public ResponseEntity<PostMessageCmd> publish(
+    @RequestBody final PostMessageCmd postedCmd,
+    @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+    PostMessageCmd cmd = idempotencyKey == null
+                         ? postedCmd
+                         : new PostMessageCmd(CommandHandlerService.idempotentUuid(postedCmd.getUserId(), idempotencyKey),
+                                              postedCmd.getUserId(),
+                                              postedCmd.getContent());
     log.info("Received command " + cmd);
-    commandHandlerService.handleCommand(cmd);
-    return new ResponseEntity<>(cmd, HttpStatus.OK);
+    if (queueDepthMonitor.isOverloaded()) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                           .header(HttpHeaders.RETRY_AFTER, sheddingRetryAfterSeconds)
+                           .body(cmd);
+    }
+    SubmissionResult result = commandSubmissionService.submit(cmd, admitted -> userRateLimiter.acquire(admitted.getUserId()));
+    switch (result.getSubmission()) {
+      case SENT:
+      case DUPLICATE:
+        return new ResponseEntity<>(cmd, HttpStatus.OK);
+      case QUEUED:
+        return new ResponseEntity<>(cmd, HttpStatus.ACCEPTED);
+      case NOT_ADMITTED:
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf((result.getRetryAfterNanos() + 999_999_999) / 1_000_000_000))
+                             .body(cmd);
+      default:
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                             .body(cmd);
+    }
   }
 }
@@ -2,13 +2,17 @@ package de.thi.jbsa.prototype.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
 import java.util.Objects;
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.Queue;
 import javax.jms.Session;
-import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -29,14 +33,30 @@ class CommandHandlerServiceITest {
   @Autowired
   private Queue queue;
 
+  private Connection testConnection;
+
+  private Object fromMessage(Message message)
+    throws JMSException {
+    return Objects.requireNonNull(jmsTemplate.getMessageConverter()).fromMessage(message);
+  }
+
   private MessageConsumer getMessageConsumerForQueue()
     throws JMSException {
-    Connection testConnection = Objects.requireNonNull(jmsTemplate.getConnectionFactory()).createConnection();
+    testConnection = Objects.requireNonNull(jmsTemplate.getConnectionFactory()).createConnection();
     testConnection.start();
     Session session = testConnection.createSession();
     return session.createConsumer(queue);
   }
 
+  @AfterEach
+  void closeConnection()
+    throws JMSException {
+    // an open consumer would keep the message groups of its test
+    if (testConnection != null) {
+      testConnection.close();
+    }
+  }
+
   @Test
   void handleCommand()
     throws Exception {
@@ -46,9 +66,31 @@ class CommandHandlerServiceITest {
     PostMessageCmd postedMessage = new PostMessageCmd("timmy", "but I also use integration tests for being closer to production");
     commandHandlerService.handleCommand(postedMessage);
     // then
-    final ActiveMQObjectMessage message = (ActiveMQObjectMessage) consumer.receive(1000);
+    final Message message = consumer.receive(1000);
     assertNotNull(message);
-    PostMessageCmd commendFromQueue = (PostMessageCmd) message.getObject();
+    assertTrue(message instanceof BytesMessage);
+    PostMessageCmd commendFromQueue = (PostMessageCmd) fromMessage(message);
     assertEquals(postedMessage, commendFromQueue);
+    assertEquals("timmy", message.getStringProperty("JMSXGroupID"));
+  }
+
+  @Test
+  void handleCommands()
+    throws Exception {
+    // given
+    MessageConsumer consumer = getMessageConsumerForQueue();
+    PostMessageCmd first = new PostMessageCmd("timmy", "first of a batch");
+    PostMessageCmd second = new PostMessageCmd("tommy", "second of a batch");
+    // when
+    commandHandlerService.handleCommands(Arrays.asList(first, second));
+    // then
+    Message firstMessage = consumer.receive(1000);
+    Message secondMessage = consumer.receive(1000);
+    assertNotNull(firstMessage);
+    assertNotNull(secondMessage);
+    assertEquals(first, fromMessage(firstMessage));
+    assertEquals("timmy", firstMessage.getStringProperty("JMSXGroupID"));
+    assertEquals(second, fromMessage(secondMessage));
+    assertEquals("tommy", secondMessage.getStringProperty("JMSXGroupID"));
   }
 }
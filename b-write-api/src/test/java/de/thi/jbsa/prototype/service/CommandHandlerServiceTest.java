@@ -1,20 +1,38 @@
 package de.thi.jbsa.prototype.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
 import javax.jms.Queue;
+import javax.jms.Session;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
 import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import de.thi.jbsa.prototype.service.CommandSubmissionService.Submission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class CommandHandlerServiceTest {
 
-  @InjectMocks
   private CommandHandlerService commandHandlerService;
 
   @Mock
@@ -23,6 +41,65 @@ class CommandHandlerServiceTest {
   @Mock
   private Queue queue;
 
+  @BeforeEach
+  void setUp() {
+    commandHandlerService = new CommandHandlerService(jmsTemplate, queue, new SimpleMeterRegistry(), 100, 60_000);
+  }
+
+  @Test
+  void testIsDuplicateOnlyForRetriesWithIdempotencyKey() {
+    // given
+    PostMessageCmd postMessageCmd = new PostMessageCmd(CommandHandlerService.idempotentUuid("timmy", "key-1"), "timmy", "Sent once");
+    PostMessageCmd retriedCmd = new PostMessageCmd(CommandHandlerService.idempotentUuid("timmy", "key-1"), "timmy", "Sent once");
+    PostMessageCmd otherUsersCmd = new PostMessageCmd(CommandHandlerService.idempotentUuid("tommy", "key-1"), "tommy", "Sent once");
+    PostMessageCmd cmdWithoutKey = new PostMessageCmd("timmy", "Sent once");
+    // when
+    boolean firstIsDuplicate = commandHandlerService.isDuplicate(postMessageCmd);
+    boolean retryIsDuplicate = commandHandlerService.isDuplicate(retriedCmd);
+    commandHandlerService.forget(retriedCmd);
+    // then
+    assertFalse(firstIsDuplicate);
+    assertTrue(retryIsDuplicate);
+    assertFalse(commandHandlerService.isDuplicate(otherUsersCmd));
+    assertFalse(commandHandlerService.isDuplicate(cmdWithoutKey));
+    assertFalse(commandHandlerService.isDuplicate(cmdWithoutKey));
+    assertFalse(commandHandlerService.isDuplicate(retriedCmd));
+  }
+
+  @Test
+  void testAsyncSubmissionForgetsDroppedCommand()
+    throws Exception {
+    // given
+    ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+    Connection connection = mock(Connection.class);
+    Session session = mock(Session.class);
+    MessageConverter messageConverter = mock(MessageConverter.class);
+    when(jmsTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+    when(jmsTemplate.getMessageConverter()).thenReturn(messageConverter);
+    when(connectionFactory.createConnection()).thenReturn(connection);
+    when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+    when(session.createProducer(queue)).thenReturn(mock(MessageProducer.class));
+    when(messageConverter.toMessage(any(), eq(session))).thenThrow(new MessageConversionException("broken"));
+    PostMessageCmd postMessageCmd = new PostMessageCmd(CommandHandlerService.idempotentUuid("timmy", "key-1"), "timmy", "Cannot be sent");
+    
+    CommandSubmissionService commandSubmissionService =
+      new CommandSubmissionService(commandHandlerService, "async", 100, 1, 0, 2);
+    commandSubmissionService.start();
+    try {
+      // when
+      Submission submission = commandSubmissionService.submit(postMessageCmd);
+      // then: once dropped, the retry isn't a duplicate any more
+      assertEquals(Submission.QUEUED, submission);
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (commandHandlerService.isDuplicate(postMessageCmd)) {
+        assertTrue(System.currentTimeMillis() < deadline, "dropped cmd is not forgotten");
+        Thread.sleep(10);
+      }
+    } finally {
+      commandSubmissionService.stop();
+    }
+  }
+
   @Test
   void testHandleCommand() {
     // given
@@ -30,6 +107,21 @@ class CommandHandlerServiceTest {
     // when
     commandHandlerService.handleCommand(postMessageCmd);
     //when
-    verify(jmsTemplate).convertAndSend(eq(queue), eq(postMessageCmd));
+    verify(jmsTemplate).convertAndSend(eq(queue), eq(postMessageCmd), any(MessagePostProcessor.class));
+  }
+
+  @Test
+  void testHandleCommandGroupsByUser()
+    throws Exception {
+    // given
+    PostMessageCmd postMessageCmd = new PostMessageCmd("timmy", "Keep my messages in order");
+    ArgumentCaptor<MessagePostProcessor> postProcessorCaptor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+    Message message = mock(Message.class);
+    // when
+    commandHandlerService.handleCommand(postMessageCmd);
+    verify(jmsTemplate).convertAndSend(eq(queue), eq(postMessageCmd), postProcessorCaptor.capture());
+    postProcessorCaptor.getValue().postProcessMessage(message);
+    // then
+    verify(message).setStringProperty("JMSXGroupID", "timmy");
   }
 }
@@ -0,0 +1,133 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.UncategorizedJmsException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CommandImportServiceTest {
+
+  private final CommandHandlerService commandHandlerService = mock(CommandHandlerService.class);
+
+  private CommandImportService commandImportService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private List<JsonNode> importLines(String... lines)
+    throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    commandImportService.importCommands(new ByteArrayInputStream(body), out);
+    List<JsonNode> results = new ArrayList<>();
+    for (String line : out.toString("UTF-8").split("\n")) {
+      results.add(objectMapper.readTree(line));
+    }
+    return results;
+  }
+
+  @Test
+  void importCommandsSendsValidLinesInBatches()
+    throws Exception {
+    // given
+    List<List<PostMessageCmd>> batches = new ArrayList<>();
+    doAnswer(invocation -> batches.add(new ArrayList<>(invocation.getArgument(0)))).when(commandHandlerService).handleCommands(anyList());
+    // when
+    List<JsonNode> results = importLines(
+      "{\"userId\":\"timmy\",\"content\":\"first\"}",
+      "not json",
+      "",
+      "{\"userId\":\"timmy\",\"content\":\"second\"}",
+      "{\"content\":\"nobody\"}",
+      "{\"userId\":\"tommy\",\"content\":\"third\"}");
+    // then
+    assertEquals(2, batches.size());
+    assertEquals("first", batches.get(0).get(0).getContent());
+    assertEquals("second", batches.get(0).get(1).getContent());
+    assertEquals("third", batches.get(1).get(0).getContent());
+    // accepted lines are reported once their batch is sent
+    assertEquals(6, results.size());
+    assertEquals(2, results.get(0).get("line").asLong());
+    assertFalse(results.get(0).get("accepted").asBoolean());
+    assertEquals(1, results.get(1).get("line").asLong());
+    assertTrue(results.get(1).get("accepted").asBoolean());
+    assertEquals(batches.get(0).get(0).getUuid().toString(), results.get(1).get("uuid").asText());
+    assertEquals(5, results.get(3).get("line").asLong());
+    assertEquals("userId is missing", results.get(3).get("error").asText());
+    JsonNode summary = results.get(5);
+    assertEquals(3, summary.get("accepted").asLong());
+    assertEquals(2, summary.get("rejected").asLong());
+  }
+
+  @Test
+  void importCommandsRejectsTooLongLinesAndGoesOnWithTheNext()
+    throws Exception {
+    // given
+    List<PostMessageCmd> sent = new ArrayList<>();
+    doAnswer(invocation -> sent.addAll(invocation.getArgument(0))).when(commandHandlerService).handleCommands(anyList());
+    StringBuilder tooLong = new StringBuilder("{\"userId\":\"timmy\",\"content\":\"");
+    for (int i = 0; i < 100; i++) {
+      tooLong.append("spam ");
+    }
+    tooLong.append("\"}");
+    // when
+    List<JsonNode> results = importLines(tooLong.toString(), "{\"userId\":\"timmy\",\"content\":\"next\"}\r");
+    // then
+    assertEquals(1, results.get(0).get("line").asLong());
+    assertEquals("line is longer than 64 characters", results.get(0).get("error").asText());
+    assertEquals(1, sent.size());
+    assertEquals("next", sent.get(0).getContent());
+    assertTrue(results.get(1).get("accepted").asBoolean());
+  }
+
+  @Test
+  void importCommandsAcceptsCrLfLinesOfExactlyTheMaxLength()
+    throws Exception {
+    // given
+    List<PostMessageCmd> sent = new ArrayList<>();
+    doAnswer(invocation -> sent.addAll(invocation.getArgument(0))).when(commandHandlerService).handleCommands(anyList());
+    String maxLength = "{\"userId\":\"timmy\",\"content\":\"sixty-four characters, CRLF ended\"}";
+    String oneMore = "{\"userId\":\"timmy\",\"content\":\"sixty-five characters, CRLF ended!\"}";
+    // when
+    List<JsonNode> results = importLines(maxLength + "\r", oneMore + "\r");
+    // then
+    assertEquals(64, maxLength.length());
+    assertEquals(1, sent.size());
+    assertEquals("sixty-four characters, CRLF ended", sent.get(0).getContent());
+    assertEquals(2, results.get(0).get("line").asLong());
+    assertEquals("line is longer than 64 characters", results.get(0).get("error").asText());
+    assertTrue(results.get(1).get("accepted").asBoolean());
+  }
+
+  @Test
+  void importCommandsRejectsLinesOfFailedBatch()
+    throws Exception {
+    // given
+    doThrow(new UncategorizedJmsException("broker down")).when(commandHandlerService).handleCommands(anyList());
+    // when
+    List<JsonNode> results = importLines("{\"userId\":\"timmy\",\"content\":\"lost\"}");
+    // then
+    assertFalse(results.get(0).get("accepted").asBoolean());
+    assertEquals(0, results.get(1).get("accepted").asLong());
+    assertEquals(1, results.get(1).get("rejected").asLong());
+  }
+
+  @BeforeEach
+  void setUp() {
+    commandImportService = new CommandImportService(commandHandlerService, new SimpleMeterRegistry(), 2, 64);
+  }
+}
@@ -0,0 +1,177 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.support.converter.MessageConversionException;
+import de.thi.jbsa.prototype.model.cmd.Cmd;
+import de.thi.jbsa.prototype.model.cmd.PostMessageCmd;
+import de.thi.jbsa.prototype.service.CommandSubmissionService.Submission;
+import de.thi.jbsa.prototype.service.CommandSubmissionService.SubmissionResult;
+
+class CommandSubmissionServiceTest {
+
+  private final CommandHandlerService commandHandlerService = mock(CommandHandlerService.class);
+
+  private CommandSubmissionService commandSubmissionService;
+
+  @AfterEach
+  void tearDown()
+    throws Exception {
+    commandSubmissionService.stop();
+  }
+
+  @Test
+  void submitAsyncSendsBufferedCommandsInBatches()
+    throws Exception {
+    // given
+    List<Cmd> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch allSent = new CountDownLatch(10);
+    doAnswer(invocation -> {
+      List<Cmd> batch = invocation.getArgument(0);
+      sent.addAll(batch);
+      batch.forEach(cmd -> allSent.countDown());
+      return null;
+    }).when(commandHandlerService).handleCommands(anyList());
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "async", 100, 4, 50, 2);
+    commandSubmissionService.start();
+    List<Cmd> submitted = new ArrayList<>();
+    // when
+    for (int i = 0; i < 10; i++) {
+      PostMessageCmd cmd = new PostMessageCmd("timmy", "message " + i);
+      submitted.add(cmd);
+      assertEquals(Submission.QUEUED, commandSubmissionService.submit(cmd));
+    }
+    // then
+    allSent.await(5, TimeUnit.SECONDS);
+    assertEquals(submitted, sent);
+    verify(commandHandlerService, never()).handleCommand(any());
+  }
+
+  @Test
+  void submitAsyncRejectsWhenBufferIsFull()
+    throws Exception {
+    // given: not started, nothing drains the buffer
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "async", 2, 100, 0, 2);
+    // then
+    assertEquals(Submission.REJECTED, commandSubmissionService.submit(new PostMessageCmd("timmy", "too early")));
+    // when started, but the broker does not accept anything
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      sending.countDown();
+      blocked.await();
+      return null;
+    }).when(commandHandlerService).handleCommands(anyList());
+    commandSubmissionService.start();
+    commandSubmissionService.submit(new PostMessageCmd("timmy", "first"));
+    sending.await(5, TimeUnit.SECONDS);
+    assertEquals(Submission.QUEUED, commandSubmissionService.submit(new PostMessageCmd("timmy", "second")));
+    assertEquals(Submission.QUEUED, commandSubmissionService.submit(new PostMessageCmd("timmy", "third")));
+    // then
+    assertEquals(Submission.REJECTED, commandSubmissionService.submit(new PostMessageCmd("timmy", "fourth")));
+    blocked.countDown();
+  }
+
+  @Test
+  void submitAsyncDropsCommandsWhichCannotBeConverted()
+    throws Exception {
+    // given
+    PostMessageCmd broken = new PostMessageCmd("timmy", "cannot be converted");
+    List<Cmd> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch allSent = new CountDownLatch(2);
+    doAnswer(invocation -> {
+      List<Cmd> batch = invocation.getArgument(0);
+      if (batch.contains(broken)) {
+        throw new MessageConversionException("broken");
+      }
+      sent.addAll(batch);
+      batch.forEach(cmd -> allSent.countDown());
+      return null;
+    }).when(commandHandlerService).handleCommands(anyList());
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "async", 100, 4, 50, 2);
+    commandSubmissionService.start();
+    PostMessageCmd before = new PostMessageCmd("timmy", "before");
+    PostMessageCmd after = new PostMessageCmd("timmy", "after");
+    // when
+    commandSubmissionService.submit(before);
+    commandSubmissionService.submit(broken);
+    commandSubmissionService.submit(after);
+    // then
+    assertTrue(allSent.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(before, after), sent);
+  }
+
+  @Test
+  void submitAsyncDropsBatchAfterMaxRetries()
+    throws Exception {
+    // given
+    CountDownLatch nextSent = new CountDownLatch(1);
+    PostMessageCmd failing = new PostMessageCmd("timmy", "fails");
+    doAnswer(invocation -> {
+      List<Cmd> batch = invocation.getArgument(0);
+      if (batch.contains(failing)) {
+        throw new IllegalStateException("not transient");
+      }
+      nextSent.countDown();
+      return null;
+    }).when(commandHandlerService).handleCommands(anyList());
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "async", 100, 1, 0, 2);
+    commandSubmissionService.start();
+    // when
+    commandSubmissionService.submit(failing);
+    commandSubmissionService.submit(new PostMessageCmd("timmy", "next"));
+    // then: the first try and two retries, a second apart
+    assertTrue(nextSent.await(5, TimeUnit.SECONDS));
+    verify(commandHandlerService, times(3)).handleCommands(Collections.singletonList(failing));
+  }
+
+  @Test
+  void submitAsksAdmissionOnlyForNewCommands() {
+    // given
+    PostMessageCmd retry = new PostMessageCmd("timmy", "sent before");
+    PostMessageCmd refused = new PostMessageCmd("timmy", "too many");
+    when(commandHandlerService.isDuplicate(retry)).thenReturn(true);
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "sync", 100, 100, 5, 2);
+    AtomicInteger admissions = new AtomicInteger();
+    // when
+    SubmissionResult retryResult = commandSubmissionService.submit(retry, cmd -> admissions.incrementAndGet() * 1_000_000_000L);
+    SubmissionResult refusedResult = commandSubmissionService.submit(refused, cmd -> admissions.incrementAndGet() * 1_000_000_000L);
+    // then
+    assertEquals(Submission.DUPLICATE, retryResult.getSubmission());
+    assertEquals(Submission.NOT_ADMITTED, refusedResult.getSubmission());
+    assertEquals(1_000_000_000L, refusedResult.getRetryAfterNanos());
+    assertEquals(1, admissions.get());
+    verify(commandHandlerService).forget(refused);
+    verify(commandHandlerService, never()).handleCommand(any());
+  }
+
+  @Test
+  void submitSyncSendsImmediately() {
+    // given
+    commandSubmissionService = new CommandSubmissionService(commandHandlerService, "sync", 100, 100, 5, 2);
+    commandSubmissionService.start();
+    PostMessageCmd cmd = new PostMessageCmd("timmy", "right now");
+    // when
+    Submission submission = commandSubmissionService.submit(cmd);
+    // then
+    assertEquals(Submission.SENT, submission);
+    verify(commandHandlerService).handleCommand(cmd);
+  }
+}
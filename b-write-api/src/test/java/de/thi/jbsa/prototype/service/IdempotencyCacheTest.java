@@ -0,0 +1,43 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyCacheTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void addRejectsUuidUntilItExpires() {
+    // given
+    IdempotencyCache cache = new IdempotencyCache(10, 100, now::get);
+    UUID uuid = UUID.randomUUID();
+    // when
+    assertTrue(cache.add(uuid));
+    now.addAndGet(99);
+    assertFalse(cache.add(uuid));
+    now.addAndGet(1);
+    // then
+    assertTrue(cache.add(uuid));
+    assertFalse(cache.add(uuid));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void addEvictsEldestBeyondCapacity() {
+    // given
+    IdempotencyCache cache = new IdempotencyCache(2, 100, now::get);
+    UUID eldest = UUID.randomUUID();
+    cache.add(eldest);
+    cache.add(UUID.randomUUID());
+    // when
+    cache.add(UUID.randomUUID());
+    // then
+    assertEquals(2, cache.size());
+    assertTrue(cache.add(eldest));
+  }
+}
@@ -0,0 +1,45 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QueueDepthMonitorTest {
+
+  private static final String URL = "http://broker:8161/api/jolokia/read/queue/QueueSize";
+
+  private final RestTemplate restTemplate = mock(RestTemplate.class);
+
+  private final QueueDepthMonitor queueDepthMonitor = new QueueDepthMonitor(restTemplate, new SimpleMeterRegistry(), URL, 100);
+
+  @Test
+  void pollShedsWhileQueueIsTooDeep() {
+    // given
+    when(restTemplate.getForObject(URL, String.class)).thenReturn("{\"value\":100,\"status\":200}", "{\"value\":99,\"status\":200}");
+    // when
+    queueDepthMonitor.poll();
+    // then
+    assertEquals(100, queueDepthMonitor.getDepth());
+    assertTrue(queueDepthMonitor.isOverloaded());
+    queueDepthMonitor.poll();
+    assertFalse(queueDepthMonitor.isOverloaded());
+  }
+
+  @Test
+  void pollShedsNothingWithoutAnswer() {
+    // given
+    when(restTemplate.getForObject(URL, String.class)).thenReturn("{\"value\":500}").thenThrow(new ResourceAccessException("down"));
+    queueDepthMonitor.poll();
+    // when
+    queueDepthMonitor.poll();
+    // then
+    assertEquals(-1, queueDepthMonitor.getDepth());
+    assertFalse(queueDepthMonitor.isOverloaded());
+  }
+}
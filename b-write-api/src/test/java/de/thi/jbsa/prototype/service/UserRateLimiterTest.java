@@ -0,0 +1,47 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UserRateLimiterTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  private final UserRateLimiter userRateLimiter = new UserRateLimiter(new SimpleMeterRegistry(), 10, 3, 4, now::get);
+
+  @Test
+  void acquireAllowsBurstThenRate() {
+    // given
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, userRateLimiter.acquire("timmy"));
+    }
+    // when
+    long waitNanos = userRateLimiter.acquire("timmy");
+    // then
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), waitNanos);
+    assertEquals(0, userRateLimiter.acquire("tommy"));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    assertEquals(0, userRateLimiter.acquire("timmy"));
+    assertTrue(userRateLimiter.acquire("timmy") > 0);
+  }
+
+  @Test
+  void acquireEvictsIdleUsers() {
+    // given
+    for (int i = 0; i < 100; i++) {
+      userRateLimiter.acquire("user" + i);
+    }
+    assertEquals(100, userRateLimiter.size());
+    // when: every stripe is swept once the buckets are full again
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    for (int i = 0; i < 100; i++) {
+      userRateLimiter.acquire("other" + i);
+    }
+    // then
+    assertEquals(100, userRateLimiter.size());
+  }
+}
@@ -0,0 +1,79 @@
+package de.thi.jbsa.prototype.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import de.thi.jbsa.prototype.aop.AhoCorasickCensor;
+
+/**
+ * Censoring one chat message with the compiled automaton vs. one {@link String#replace} pass per term, as the aspect did
+ * before the dictionaries were introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CensorshipBenchmark {
+
+  private static final String REPLACEMENT = "<not allowed term>";
+
+  private AhoCorasickCensor censor;
+
+  private String message;
+
+  @Param({ "3", "1000", "10000" })
+  private int termCount;
+
+  private List<String> terms;
+
+  static String randomWord(Random random, int minLength, int maxLength) {
+    int length = minLength + random.nextInt(maxLength - minLength + 1);
+    StringBuilder word = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      word.append((char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+
+  @Benchmark
+  public String ahoCorasick() {
+    return censor.censor(message);
+  }
+
+  @Benchmark
+  public String replacePerTerm() {
+    String content = message;
+    for (String term : terms) {
+      content = content.replace(term, REPLACEMENT);
+    }
+    return content;
+  }
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    terms = new ArrayList<>(termCount);
+    for (int i = 0; i < termCount; i++) {
+      terms.add(randomWord(random, 4, 12));
+    }
+    censor = new AhoCorasickCensor(terms, REPLACEMENT);
+
+    // a typical message of ~280 characters containing two terms of the dictionary
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 280) {
+      text.append(randomWord(random, 2, 9)).append(' ');
+      if (text.length() > 90 && text.length() < 100 || text.length() > 200 && text.length() < 210) {
+        text.append(terms.get(random.nextInt(terms.size()))).append(' ');
+      }
+    }
+    message = text.toString();
+  }
+}
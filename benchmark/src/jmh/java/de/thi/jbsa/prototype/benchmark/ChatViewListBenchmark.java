@@ -0,0 +1,71 @@
+package de.thi.jbsa.prototype.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.view.MessageWindow;
+
+/**
+ * The list updates of the {@code ChatView} for incoming events: {@link MessageWindow#apply} is the path the view takes for
+ * every posted or repeated event, only the refresh of the Vaadin grid is left out.
+ * <p>
+ * {@code windowMessagePosted}: a new message is put into the full window and evicts the eldest one.
+ * {@code windowMessageRepeated}: the count of a message in the middle of the window is updated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChatViewListBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  private int messageCount;
+
+  private MessageWindow messageWindow;
+
+  private long nextMessageNumber;
+
+  private MessageRepeatedEvent repeatedEvent;
+
+  @Benchmark
+  public boolean windowMessagePosted(Blackhole blackhole) {
+    // a new uuid per message, so the eldest one is evicted every time
+    MessagePostedEvent postedEvent = new MessagePostedEvent(new UUID(0, nextMessageNumber), UUID.randomUUID(), "A new message",
+                                                            nextMessageNumber++, "timmy");
+    return messageWindow.apply(postedEvent, blackhole::consume);
+  }
+
+  @Benchmark
+  public boolean windowMessageRepeated(Blackhole blackhole) {
+    return messageWindow.apply(repeatedEvent, blackhole::consume);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    messageWindow = new MessageWindow(messageCount);
+    for (; nextMessageNumber < messageCount; nextMessageNumber++) {
+      messageWindow.apply(new MessagePostedEvent(new UUID(0, nextMessageNumber), UUID.randomUUID(), "Message number " + nextMessageNumber,
+                                                 nextMessageNumber, "timmy"), message -> {});
+    }
+    // a repeat of a message in the middle of the window, every benchmark has a trial of its own so nothing evicts it
+    List<Message> messages = new ArrayList<>(messageWindow.getMessages());
+    repeatedEvent = MessageRepeatedEvent.builder()
+                                        .occurCount(2)
+                                        .originalMessageUUID(messages.get(messageCount / 2).getEventUuid())
+                                        .currentMessageEventUUID(UUID.randomUUID())
+                                        .build();
+  }
+}
@@ -0,0 +1,86 @@
+package de.thi.jbsa.prototype.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thi.jbsa.prototype.codec.BinaryCodec;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+
+/**
+ * Round trips of the events: Jackson as used by the event store, the binary codec and Java serialization as used on the
+ * JMS wire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventSerializationBenchmark {
+
+  private AbstractEvent event;
+
+  @Param({ "posted", "mention", "repeated" })
+  private String eventType;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Benchmark
+  public Object binaryCodec() {
+    return BinaryCodec.decode(BinaryCodec.encode(event));
+  }
+
+  @Benchmark
+  public Object jackson()
+    throws IOException {
+    return objectMapper.readValue(objectMapper.writeValueAsString(event), AbstractEvent.class);
+  }
+
+  @Benchmark
+  public Object javaSerialization()
+    throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(event);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return in.readObject();
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    switch (eventType) {
+      case "posted":
+        event = new MessagePostedEvent(UUID.randomUUID(), "Hello @bernd, did you see the lecture notes of today?", 4711L, "timmy");
+        break;
+      case "mention":
+        event = new MentionEvent(UUID.randomUUID(), "bernd", Arrays.asList(6), "timmy");
+        break;
+      case "repeated":
+        event = MessageRepeatedEvent.builder()
+                                    .occurCount(3)
+                                    .originalMessageUUID(UUID.randomUUID())
+                                    .currentMessageEventUUID(UUID.randomUUID())
+                                    .build();
+        break;
+      default:
+        throw new IllegalArgumentException(eventType);
+    }
+    event.setEntityId(4711L);
+  }
+}
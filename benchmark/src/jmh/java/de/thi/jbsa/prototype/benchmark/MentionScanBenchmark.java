@@ -0,0 +1,48 @@
+package de.thi.jbsa.prototype.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import de.thi.jbsa.prototype.model.Mention;
+import de.thi.jbsa.prototype.service.MentionScanner;
+
+/**
+ * Mention extraction with the {@link MentionScanner} vs. the regex the domain handler compiled for every message before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MentionScanBenchmark {
+
+  private final MentionScanner mentionScanner = new MentionScanner();
+
+  @Param({
+    "Hello World, nobody is mentioned in this message at all, it is just some plain text of a usual length.",
+    "Hello @bernd and @timmy, did you see the message of @balazs? @bernd please answer until tomorrow."
+  })
+  private String content;
+
+  @Benchmark
+  public List<String> regex() {
+    List<String> mentionedUsers = new ArrayList<>();
+    Matcher matcher = Pattern.compile("\\s@([\\w_-]+)").matcher(content);
+    while (matcher.find()) {
+      mentionedUsers.add(matcher.group().substring(2));
+    }
+    return mentionedUsers;
+  }
+
+  @Benchmark
+  public List<Mention> scanner() {
+    return mentionScanner.scan(content);
+  }
+}
@@ -0,0 +1,72 @@
+package de.thi.jbsa.prototype.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import de.thi.jbsa.prototype.domain.MessageDoc;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.repository.MessageRepository;
+import de.thi.jbsa.prototype.service.MessageService;
+import de.thi.jbsa.prototype.service.RecentMessageWindow;
+
+/**
+ * {@link MessageService#getlast10Messages()} served from the {@link RecentMessageWindow} vs. the former sorting of the
+ * query result, without the database. The stubbed repository answers with the documents in the order of the query (newest
+ * first).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecentMessagesBenchmark {
+
+  private MessageService messageService;
+
+  private List<MessageDoc> newestFirst;
+
+  @Benchmark
+  public List<Message> queryResultSorted() {
+    // a new list per call, like the repository
+    return new ArrayList<>(newestFirst).stream()
+                                       .map(MessageDoc::getMessage)
+                                       .sorted(Comparator.comparingLong(Message::getEntityId))
+                                       .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<Message> recentMessageWindow() {
+    return messageService.getlast10Messages();
+  }
+
+  @Setup
+  public void setUp() {
+    newestFirst = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (int i = 10; i > 0; i--) {
+      Message message = new Message(UUID.randomUUID(), "Message number " + i, new Date(now - (10 - i) * 1000L), (long) i, UUID.randomUUID(), "timmy", 1);
+      newestFirst.add(new MessageDoc(message));
+    }
+    MessageRepository messageRepository = (MessageRepository) Proxy.newProxyInstance(
+      MessageRepository.class.getClassLoader(),
+      new Class<?>[] { MessageRepository.class },
+      (proxy, method, args) -> {
+        if (method.getName().equals("findByOrderByMessage_EntityIdDesc")) {
+          return new ArrayList<>(newestFirst);
+        }
+        throw new UnsupportedOperationException(method.getName());
+      });
+    messageService = new MessageService(messageRepository, null, null, new RecentMessageWindow(100), null, 200);
+    messageService.warmUpRecentMessages();
+  }
+}
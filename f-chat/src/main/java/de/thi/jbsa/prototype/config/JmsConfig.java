@@ -0,0 +1,48 @@
+package de.thi.jbsa.prototype.config;
+
+import java.io.IOException;
+import org.apache.activemq.transport.DefaultTransportListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.activemq.ActiveMQConnectionFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import de.thi.jbsa.prototype.codec.BinaryMessageConverter;
+import de.thi.jbsa.prototype.consumer.UiEventConsumer;
+
+@Configuration
+public class JmsConfig {
+
+  /**
+   * The UI topic subscription isn't durable, events sent while the connection is down have to be caught up with
+   */
+  @Bean
+  public ActiveMQConnectionFactoryCustomizer catchUpOnConnectionFailure(UiEventConsumer uiEventConsumer) {
+    return connectionFactory -> connectionFactory.setTransportListener(new DefaultTransportListener() {
+
+      @Override
+      public void onException(IOException error) {
+        uiEventConsumer.connectionInterrupted();
+      }
+
+      @Override
+      public void transportInterupted() {
+        uiEventConsumer.connectionInterrupted();
+      }
+
+      @Override
+      public void transportResumed() {
+        uiEventConsumer.connectionResumed();
+      }
+    });
+  }
+
+  /**
+   * The binary converter also reads Java-serialized events, so the UI can be switched before or after the read-api
+   */
+  @Bean
+  public MessageConverter messageConverter(@Value("${studychat.jms.codec:binary}") String codec) {
+    return "java".equalsIgnoreCase(codec) ? new SimpleMessageConverter() : new BinaryMessageConverter();
+  }
+}
@@ -1,16 +1,65 @@
 package de.thi.jbsa.prototype.consumer;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.shared.Registration;
 import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.service.EventCatchUp;
+import de.thi.jbsa.prototype.service.MessageSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Fans the events of the UI topic out to the registered UIs.
+ * <p>
+ * The JMS thread only puts the event into a bounded queue per UI. The queues are drained on a small pool of delivery
+ * threads, each UI by at most one thread at a time, so the events of a UI keep their order and a slow UI only delays itself.
+ * A UI whose queue overflows is dropped from the registry and notified, detached UIs are removed on their next delivery.
+ * <p>
+ * A drain starts {@code coalesce-ms} after the first pending event and hands all events pending by then to the UI at once,
+ * so a UI gets at most one update (and push) per window. Repeat counts of the same message only keep the latest one.
+ * <p>
+ * Mentions carry their recipient as {@link MentionEvent#RECIPIENT_PROPERTY} and are only queued for the UIs of that user,
+ * found by a map from user id to UIs. The node still subscribes to all mentions: a selector listing the connected users would
+ * have to be changed on every login and logout, which means a new consumer each time, and could lose mentions in between.
+ * <p>
+ * The subscription of the topic isn't durable. Once the broker connection is back after a failure, the events after the
+ * greatest {@link EventList#POSITION_PROPERTY} received are caught up with on a delivery thread, or before the next event if
+ * that comes first. The events of the read-api instances may arrive a little out of order, so the catch-up starts
+ * {@link #CATCH_UP_OVERLAP} before that position. The uuids of the latest events delivered are kept and events of the topic
+ * or the catch-up which were delivered already are skipped. If the events can't be caught up with, the snapshot is loaded
+ * again and all UIs are reloaded like after an overflow.
+ *
  * @author Christopher Timm <christopher.timm@beskgroup.com> on 2020-04-21
  */
 @Component
@@ -18,26 +67,327 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class UiEventConsumer {
 
-  private static LinkedList<Consumer<AbstractEvent>> listeners = new LinkedList<>();
+  /**
+   * Registration of a UI, the UI receives the mentions of the user set here
+   */
+  public interface Subscription
+    extends Registration {
 
-  @JmsListener(destination = "ui-event-topic")
-  public void listener(AbstractEvent event) {
-    log.info("received event " + event);
-    for (Consumer<AbstractEvent> abstractEventConsumer : listeners) {
+    void setUserId(String userId);
+  }
+
+  private final class Subscriber
+    implements Subscription, Runnable {
+
+    private long lastDelivery;
+
+    private final Consumer<List<AbstractEvent>> listener;
+
+    private final Runnable onOverflow;
+
+    private final BlockingQueue<AbstractEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+    private volatile boolean removed;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private String userId;
+
+    private Subscriber(Consumer<List<AbstractEvent>> listener, Runnable onOverflow) {
+      this.listener = listener;
+      this.onOverflow = onOverflow;
+    }
+
+    private void deliver(List<AbstractEvent> events) {
+      List<AbstractEvent> coalescedEvents = coalesce(events);
+      listener.accept(coalescedEvents);
+      long now = System.nanoTime();
+      if (lastDelivery != 0) {
+        pushInterval.record(now - lastDelivery, TimeUnit.NANOSECONDS);
+      }
+      lastDelivery = now;
+      pushCounter.increment();
+      pushedEvents.record(coalescedEvents.size());
+      coalescedCounter.increment(events.size() - coalescedEvents.size());
+    }
+
+    private void offer(AbstractEvent event) {
+      if (removed) {
+        return;
+      }
+      if (!queue.offer(event)) {
+        log.warn("UI does not keep up with the events, dropping it");
+        remove();
+        droppedCounter.increment();
+        executor.execute(onOverflow);
+        return;
+      }
+      schedule();
+    }
+
+    @Override
+    public synchronized void remove() {
+      if (subscribers.remove(this)) {
+        removed = true;
+        queue.clear();
+        removeUser(userId, this);
+      }
+    }
+
+    @Override
+    public void run() {
       try {
-        abstractEventConsumer.accept(event);
+        // the other UIs get their turn after a while, the rest follows with the next run
+        List<AbstractEvent> events = new ArrayList<>();
+        queue.drainTo(events, DRAIN_LIMIT);
+        if (!removed && !events.isEmpty()) {
+          deliver(events);
+        }
       } catch (UIDetachedException uiDetachedException) {
         // an open window without activity might become detached after some time
         log.debug("detached UI : {}", uiDetachedException.toString());
-        listeners.remove(abstractEventConsumer);
+        remove();
+      } catch (RuntimeException e) {
+        log.warn("Delivering events to a UI failed", e);
+      } finally {
+        scheduled.set(false);
+        if (!removed && !queue.isEmpty()) {
+          schedule();
+        }
+      }
+    }
+
+    private void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        executor.schedule(this, coalesceMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    @Override
+    public synchronized void setUserId(String userId) {
+      if (removed || Objects.equals(this.userId, userId)) {
+        return;
+      }
+      removeUser(this.userId, this);
+      this.userId = userId;
+      if (userId != null) {
+        subscribersByUser.compute(userId, (key, userSubscribers) -> {
+          Set<Subscriber> newUserSubscribers = userSubscribers == null ? ConcurrentHashMap.newKeySet() : userSubscribers;
+          newUserSubscribers.add(this);
+          return newUserSubscribers;
+        });
+      }
+    }
+  }
+
+  /**
+   * Positions are the time in ms * 1000, so 5 seconds
+   */
+  static final long CATCH_UP_OVERLAP = 5_000_000;
+
+  private static final int DELIVERED_EVENTS_CAPACITY = 10_000;
+
+  private static final int DRAIN_LIMIT = 100;
+
+  private static final String UI_EVENT_TOPIC = "ui-event-topic";
+
+  private volatile boolean catchUpRequired;
+
+  private final long coalesceMillis;
+
+  private final Counter coalescedCounter;
+
+  /**
+   * Uuids of the latest events delivered, from the topic or a catch-up
+   */
+  private final Set<UUID> deliveredEvents = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<UUID, Boolean>() {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+      return size() > DELIVERED_EVENTS_CAPACITY;
+    }
+  }));
+
+  private final Counter droppedCounter;
+
+  private final EventCatchUp eventCatchUp;
+
+  private final ScheduledExecutorService executor;
+
+  /**
+   * Greatest position received, {@code null} before the first event of the topic
+   */
+  private Long lastPosition;
+
+  private final Counter pushCounter;
+
+  private final Timer pushInterval;
+
+  private final DistributionSummary pushedEvents;
+
+  private final MessageSnapshot messageSnapshot;
+
+  private final int queueCapacity;
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  private final Map<String, Set<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+
+  public UiEventConsumer(
+    MessageSnapshot messageSnapshot,
+    EventCatchUp eventCatchUp,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.ui.delivery-threads:4}") int deliveryThreads,
+    @Value("${studychat.ui.queue-capacity:1000}") int queueCapacity,
+    @Value("${studychat.ui.coalesce-ms:100}") long coalesceMillis) {
+    this.messageSnapshot = messageSnapshot;
+    this.eventCatchUp = eventCatchUp;
+    this.queueCapacity = queueCapacity;
+    this.coalesceMillis = coalesceMillis;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newScheduledThreadPool(deliveryThreads, runnable -> {
+      Thread thread = new Thread(runnable, "ui-delivery-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.droppedCounter = meterRegistry.counter("studychat.ui.dropped");
+    this.coalescedCounter = meterRegistry.counter("studychat.ui.coalesced");
+    this.pushCounter = meterRegistry.counter("studychat.ui.pushes");
+    this.pushedEvents = meterRegistry.summary("studychat.ui.push.events");
+    // time between two updates of the same UI, the push rate per session without a meter per session
+    this.pushInterval = meterRegistry.timer("studychat.ui.push.interval");
+    meterRegistry.gaugeCollectionSize("studychat.ui.sessions", Tags.empty(), subscribers);
+  }
+
+  /**
+   * @return the events without the repeat counts which are overwritten by a later one of the same message
+   */
+  static List<AbstractEvent> coalesce(List<AbstractEvent> events) {
+    Set<UUID> repeatedMessages = new HashSet<>();
+    List<AbstractEvent> coalescedEvents = new ArrayList<>(events.size());
+    for (int i = events.size() - 1; i >= 0; i--) {
+      AbstractEvent event = events.get(i);
+      if (event instanceof MessageRepeatedEvent && !repeatedMessages.add(((MessageRepeatedEvent) event).getOriginalMessageUUID())) {
+        continue;
+      }
+      coalescedEvents.add(event);
+    }
+    Collections.reverse(coalescedEvents);
+    return coalescedEvents;
+  }
+
+  private void catchUp() {
+    catchUpRequired = false;
+    EventList missedEvents = lastPosition == null ? null : eventCatchUp.getEventsAfter(lastPosition - CATCH_UP_OVERLAP);
+    if (missedEvents == null) {
+      messageSnapshot.markStale();
+      for (Subscriber subscriber : subscribers) {
+        subscriber.remove();
+        executor.execute(subscriber.onOverflow);
+      }
+      return;
+    }
+    for (AbstractEvent event : missedEvents.getEvents()) {
+      if (!deliveredEvents.add(event.getUuid())) {
+        continue;
+      }
+      if (event instanceof MentionEvent) {
+        offerMention((MentionEvent) event);
+      } else {
+        offer(event);
+      }
+    }
+    lastPosition = Math.max(lastPosition, missedEvents.getPosition());
+  }
+
+  /**
+   * Called by the broker connection when it failed, events sent meanwhile are missing
+   */
+  public void connectionInterrupted() {
+    catchUpRequired = true;
+  }
+
+  /**
+   * Called by the broker connection when it is back, the missed events are caught up with without waiting for the next one
+   */
+  public void connectionResumed() {
+    executor.execute(() -> {
+      synchronized (this) {
+        if (catchUpRequired) {
+          catchUp();
+        }
       }
+    });
+  }
+
+  @JmsListener(destination = UI_EVENT_TOPIC, selector = MentionEvent.RECIPIENT_PROPERTY + " IS NULL")
+  public synchronized void listener(AbstractEvent event, @Header(name = EventList.POSITION_PROPERTY, required = false) Long position) {
+    log.info("received event " + event);
+    if (catchUpRequired) {
+      catchUp();
+    }
+    if (position != null) {
+      lastPosition = lastPosition == null ? position : Math.max(lastPosition, position);
+    }
+    if (!deliveredEvents.add(event.getUuid())) {
+      log.debug("event at {} was caught up with already", position);
+      return;
+    }
+    offer(event);
+  }
+
+  @JmsListener(destination = UI_EVENT_TOPIC, selector = MentionEvent.RECIPIENT_PROPERTY + " IS NOT NULL")
+  public void mentionListener(MentionEvent event) {
+    log.debug("received mention of user {}", event.getMentionedUser());
+    if (!deliveredEvents.add(event.getUuid())) {
+      return;
+    }
+    offerMention(event);
+  }
+
+  private void offer(AbstractEvent event) {
+    // before the views, so a view registering meanwhile gets the event from the snapshot or from its queue (or both)
+    messageSnapshot.eventReceived(event);
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(event);
     }
   }
 
-  public static Registration registrer(
-    Consumer<AbstractEvent> listener
-  ) {
-    listeners.add(listener);
-    return () -> listeners.remove();
+  private void offerMention(MentionEvent event) {
+    Set<Subscriber> userSubscribers = subscribersByUser.get(event.getMentionedUser());
+    if (userSubscribers != null) {
+      for (Subscriber subscriber : userSubscribers) {
+        subscriber.offer(event);
+      }
+    }
+  }
+
+  /**
+   * @param listener   called with the pending events in the order of the topic, on a delivery thread
+   * @param onOverflow called once on a delivery thread if the UI got dropped because it fell too far behind, it has to
+   *                   register again
+   */
+  public Subscription register(Consumer<List<AbstractEvent>> listener, Runnable onOverflow) {
+    Subscriber subscriber = new Subscriber(listener, onOverflow);
+    subscribers.add(subscriber);
+    return subscriber;
+  }
+
+  private void removeUser(String userId, Subscriber subscriber) {
+    if (userId != null) {
+      subscribersByUser.computeIfPresent(userId, (key, userSubscribers) -> {
+        userSubscribers.remove(subscriber);
+        return userSubscribers.isEmpty() ? null : userSubscribers;
+      });
+    }
+  }
+
+  public int size() {
+    return subscribers.size();
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
   }
 }
@@ -0,0 +1,54 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.EventList;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gets the events of the UI topic a node missed while its broker connection was down from the read API.
+ */
+@Component
+@Slf4j
+public class EventCatchUp {
+
+  private final String getEventsUrl;
+
+  private final RestTemplate restTemplate;
+
+  public EventCatchUp(RestTemplate restTemplate, @Value("${studychat.url.getEvents}") String getEventsUrl) {
+    this.restTemplate = restTemplate;
+    this.getEventsUrl = getEventsUrl;
+  }
+
+  /**
+   * @param after position of the last event received
+   * @return the events after the position including all mentions and the position of the last one, {@code null} if the
+   * messages have to be loaded again instead
+   */
+  public EventList getEventsAfter(long after) {
+    List<AbstractEvent> events = new ArrayList<>();
+    long position = after;
+    try {
+      EventList eventList;
+      do {
+        eventList = restTemplate.getForObject(getEventsUrl, EventList.class, position);
+        if (eventList == null || eventList.isReloadRequired()) {
+          return null;
+        }
+        events.addAll(eventList.getEvents());
+        position = eventList.getPosition();
+      } while (eventList.isHasMore());
+    } catch (RestClientException e) {
+      log.warn("Missed events cannot be caught up with: {}", e.toString());
+      return null;
+    }
+    log.info("Caught up with {} missed events", events.size());
+    return new EventList(events, position, false, false);
+  }
+}
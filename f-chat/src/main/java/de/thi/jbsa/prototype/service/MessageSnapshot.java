@@ -0,0 +1,195 @@
+package de.thi.jbsa.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The recent messages of this node, shared by all views, so attaching a view doesn't call the read API.
+ * <p>
+ * Loaded from the read API once at startup and kept current by the events of the UI topic. The read API is only called
+ * again while the snapshot is stale: it couldn't be loaded yet, or the topic connection failed and the missed events
+ * couldn't be caught up with. Concurrent attaches then wait for a single load. Events arriving during a load are applied to
+ * its result.
+ */
+@Component
+@Slf4j
+public class MessageSnapshot {
+
+  private final int capacity;
+
+  private final List<AbstractEvent> eventsDuringLoad = new ArrayList<>();
+
+  private final String getMessagesUrl;
+
+  private final Object loadLock = new Object();
+
+  private final Counter loadCounter;
+
+  private boolean loading;
+
+  /**
+   * Immutable, the messages themselves are never changed either
+   */
+  private volatile List<Message> messages = Collections.emptyList();
+
+  private final RestTemplate restTemplate;
+
+  private volatile boolean stale = true;
+
+  public MessageSnapshot(
+    RestTemplate restTemplate,
+    MeterRegistry meterRegistry,
+    @Value("${studychat.url.getMessages}") String getMessagesUrl,
+    @Value("${studychat.ui.snapshot-size:100}") int capacity) {
+    this.restTemplate = restTemplate;
+    this.getMessagesUrl = getMessagesUrl;
+    this.capacity = capacity;
+    this.loadCounter = meterRegistry.counter("studychat.ui.snapshot.loads");
+  }
+
+  private static Message copy(Message message) {
+    return new Message(message.getCmdUuid(), message.getContent(), message.getCreated(), message.getEntityId(), message.getEventUuid(),
+      message.getSenderUserId(), message.getOccurCount());
+  }
+
+  public static Message createMsg(MessagePostedEvent event) {
+    Message msg = new Message();
+    msg.setCmdUuid(event.getCmdUuid());
+    msg.setContent(event.getContent());
+    msg.setCreated(new Date());
+    msg.setEntityId(event.getEntityId());
+    msg.setEventUuid(event.getUuid());
+    msg.setSenderUserId(event.getUserId());
+    return msg;
+  }
+
+  private List<Message> apply(List<Message> messages, AbstractEvent event) {
+    if (event instanceof MessagePostedEvent) {
+      Message message = createMsg((MessagePostedEvent) event);
+      if (indexOf(messages, message) >= 0) {
+        return messages;
+      }
+      List<Message> newMessages = new ArrayList<>(messages.subList(Math.max(0, messages.size() + 1 - capacity), messages.size()));
+      newMessages.add(message);
+      return Collections.unmodifiableList(newMessages);
+    }
+    if (event instanceof MessageRepeatedEvent) {
+      MessageRepeatedEvent repeatedEvent = (MessageRepeatedEvent) event;
+      for (int i = 0; i < messages.size(); i++) {
+        Message message = messages.get(i);
+        if (message.getEventUuid().equals(repeatedEvent.getOriginalMessageUUID()) && message.getOccurCount() < repeatedEvent.getOccurCount()) {
+          Message repeatedMessage = copy(message);
+          repeatedMessage.setOccurCount(repeatedEvent.getOccurCount());
+          List<Message> newMessages = new ArrayList<>(messages);
+          newMessages.set(i, repeatedMessage);
+          return Collections.unmodifiableList(newMessages);
+        }
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * Called with every event of the UI topic, in the order of the topic.
+   */
+  public synchronized void eventReceived(AbstractEvent event) {
+    messages = apply(messages, event);
+    if (loading) {
+      eventsDuringLoad.add(event);
+    }
+  }
+
+  /**
+   * @return copies of the recent messages, the eldest first; the view may change them
+   */
+  public List<Message> getMessages() {
+    if (stale) {
+      load();
+    }
+    return messages.stream().map(MessageSnapshot::copy).collect(Collectors.toList());
+  }
+
+  private static int indexOf(List<Message> messages, Message message) {
+    for (int i = 0; i < messages.size(); i++) {
+      if (messages.get(i).getEventUuid().equals(message.getEventUuid())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public boolean isStale() {
+    return stale;
+  }
+
+  private void load() {
+    synchronized (loadLock) {
+      synchronized (this) {
+        if (!stale) {
+          // loaded by a concurrent caller meanwhile
+          return;
+        }
+        stale = false;
+        loading = true;
+        eventsDuringLoad.clear();
+      }
+      List<Message> loadedMessages;
+      try {
+        ResponseEntity<Message[]> responseEntity = restTemplate.getForEntity(getMessagesUrl, Message[].class);
+        loadedMessages = responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() != null
+                         ? Arrays.asList(responseEntity.getBody())
+                         : null;
+      } catch (RestClientException e) {
+        log.warn("Recent messages cannot be loaded: {}", e.toString());
+        loadedMessages = null;
+      }
+      loadCounter.increment();
+      synchronized (this) {
+        loading = false;
+        if (loadedMessages == null) {
+          // the views get what is there, the next attach tries again
+          stale = true;
+          return;
+        }
+        List<Message> newMessages = Collections.unmodifiableList(new ArrayList<>(
+          loadedMessages.subList(Math.max(0, loadedMessages.size() - capacity), loadedMessages.size())));
+        for (AbstractEvent event : eventsDuringLoad) {
+          newMessages = apply(newMessages, event);
+        }
+        eventsDuringLoad.clear();
+        messages = newMessages;
+        log.info("Loaded {} recent messages", newMessages.size());
+      }
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    load();
+  }
+
+  /**
+   * Events of the UI topic may have been missed, the next view loads the messages from the read API again.
+   */
+  public void markStale() {
+    stale = true;
+  }
+}
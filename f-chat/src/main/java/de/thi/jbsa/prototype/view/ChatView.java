@@ -1,34 +1,28 @@
 package de.thi.jbsa.prototype.view;
 
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Key;
 import com.vaadin.flow.component.Text;
 import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Label;
-import com.vaadin.flow.component.listbox.ListBox;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.ListDataProvider;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.Route;
-import com.vaadin.flow.shared.Registration;
 import com.vaadin.flow.shared.ui.Transport;
 import com.vaadin.flow.spring.annotation.SpringComponent;
 import com.vaadin.flow.spring.annotation.UIScope;
@@ -39,6 +33,7 @@ import de.thi.jbsa.prototype.model.event.MentionEvent;
 import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
 import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
 import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.service.MessageSnapshot;
 import lombok.extern.slf4j.Slf4j;
 
 @UIScope
@@ -53,13 +48,13 @@ public class ChatView
     MESSAGE_POSTED(MessagePostedEvent.class) {
       @Override
       void handle(ChatView chatView, AbstractEvent event) {
-        chatView.addMessageImpl(chatView.createMsg((MessagePostedEvent) event));
+        chatView.applyToMessageWindow(event);
       }
     },
     MESSAGE_REPEATED(MessageRepeatedEvent.class) {
       @Override
       void handle(ChatView chatView, AbstractEvent event) {
-        chatView.setCounterForMessage((MessageRepeatedEvent) event);
+        chatView.applyToMessageWindow(event);
       }
     },
     NOTIFICATION(MentionEvent.class) {
@@ -89,30 +84,39 @@ public class ChatView
     }
   }
 
-  private final List<Message> messagesForListBox = new ArrayList<>();
+  private final ListDataProvider<Message> messageDataProvider;
 
-  private final ListBox<Message> msgListBox;
+  private final Grid<Message> msgGrid;
+
+  private final MessageWindow messageWindow;
+
+  /**
+   * Set when messages were added, the grid then needs the new size
+   */
+  private boolean messagesAdded;
 
   private final TextField sendUserIdField;
 
   final RestTemplate restTemplate;
 
-  private Registration eventRegistration;
+  private UiEventConsumer.Subscription eventRegistration;
 
-  @Value("${studychat.url.getEvents}")
-  private String getEventsUrl;
+  private final MessageSnapshot messageSnapshot;
 
-  @Value("${studychat.url.getMessages}")
-  private String getMessagesUrl;
-
-  @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-  private Optional<UUID> lastUUID = Optional.empty();
+  private final UiEventConsumer uiEventConsumer;
 
   @Value("${studychat.url.sendMessage}")
   private String sendMessageUrl;
 
-  public ChatView(RestTemplate restTemplate) {
+  public ChatView(
+    RestTemplate restTemplate,
+    UiEventConsumer uiEventConsumer,
+    MessageSnapshot messageSnapshot,
+    @Value("${studychat.ui.message-window:500}") int messageWindowCapacity) {
     this.restTemplate = restTemplate;
+    this.uiEventConsumer = uiEventConsumer;
+    this.messageSnapshot = messageSnapshot;
+    this.messageWindow = new MessageWindow(messageWindowCapacity);
     HorizontalLayout componentLayout = new HorizontalLayout();
 
     VerticalLayout sendLayout = new VerticalLayout();
@@ -124,6 +128,11 @@ public class ChatView
     TextField sendMessageField = new TextField("Message To Send");
     sendMessageField.setValue("My Message");
 
+    sendUserIdField.addValueChangeListener(e -> {
+      if (eventRegistration != null) {
+        eventRegistration.setUserId(e.getValue());
+      }
+    });
     sendUserIdField.addKeyPressListener(Key.ENTER, e -> sendMessage(sendMessageField.getValue(), sendUserIdField.getValue()));
     sendMessageField.addKeyPressListener(Key.ENTER, e -> sendMessage(sendMessageField.getValue(), sendUserIdField.getValue()));
 
@@ -131,8 +140,17 @@ public class ChatView
     sendMessageButton.addClickListener(e -> sendMessage(sendMessageField.getValue(), sendUserIdField.getValue()));
     sendMessageButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
 
-    msgListBox = new ListBox<>();
-    MessageFormat msgListBoxTipFormat = new MessageFormat(
+    // the grid only sends the visible rows to the browser, an update just the changed row or the new size
+    messageDataProvider = new ListDataProvider<Message>(messageWindow.getMessages()) {
+
+      @Override
+      public Object getId(Message item) {
+        return item.getEventUuid();
+      }
+    };
+    msgGrid = new Grid<>();
+    msgGrid.setDataProvider(messageDataProvider);
+    MessageFormat msgTipFormat = new MessageFormat(
       "" +
         "Sent: \t\t{0,time,short}\n" +
         "From: \t\t{1}\n" +
@@ -141,7 +159,7 @@ public class ChatView
         "Entity-ID: \t\t{4}\n" +
         "OccurCount: \t\t{5}\n");
 
-    msgListBox.setRenderer(new ComponentRenderer<>(msg -> {
+    msgGrid.addColumn(new ComponentRenderer<>(msg -> {
       Label label;
       if (msg.getOccurCount() > 1) {
         label = new Label(msg.getOccurCount() + "x - " + msg.getContent());
@@ -150,7 +168,7 @@ public class ChatView
       }
       label.setEnabled(false);
       Object[] strings = { msg.getCreated(), msg.getSenderUserId(), msg.getCmdUuid(), msg.getEventUuid(), msg.getEntityId(), msg.getOccurCount() };
-      String tip = msgListBoxTipFormat.format(strings);
+      String tip = msgTipFormat.format(strings);
       label.setTitle(tip);
       return label;
     }));
@@ -159,7 +177,7 @@ public class ChatView
     sendLayout.add(sendMessageField);
     sendLayout.add(sendMessageButton);
 
-    fetchLayout.add(msgListBox);
+    fetchLayout.add(msgGrid);
 
     componentLayout.add(sendLayout);
     componentLayout.add(fetchLayout);
@@ -167,51 +185,56 @@ public class ChatView
   }
 
   private void addMessageImpl(Message msg) {
-    messagesForListBox.add(msg);
+    if (messageWindow.add(msg)) {
+      messagesAdded = true;
+    } else {
+      messageDataProvider.refreshItem(msg);
+    }
   }
 
-  private void addNewEvent(AbstractEvent event) {
-    addNewEvent(Collections.singletonList(event));
+  private void applyToMessageWindow(AbstractEvent event) {
+    if (messageWindow.apply(event, messageDataProvider::refreshItem)) {
+      messagesAdded = true;
+    }
   }
 
   private void addNewEvent(List<AbstractEvent> eventList) {
-    if (eventList.size() > 0) {
-      lastUUID = Optional.of(eventList.get(eventList.size() - 1).getUuid());
-    }
-
     eventList.forEach(event -> EventHandler.valueOf(event).handle(this, event));
-    msgListBox.setItems(messagesForListBox);
+    refreshIfMessagesAdded();
   }
 
   private void addNewMessages(List<Message> allMessages) {
-    messagesForListBox.addAll(allMessages);
-    msgListBox.setItems(messagesForListBox);
+    allMessages.forEach(this::addMessageImpl);
+    refreshIfMessagesAdded();
   }
 
   @Override
   protected void onAttach(AttachEvent attachEvent) {
-    addNewMessages(getMessagesForInitialState());
-    UI ui = attachEvent.getUI();
-    eventRegistration = UiEventConsumer.registrer(abstractEvent -> ui.access(() -> addNewEvent(abstractEvent)));
+    eventRegistration = registerForEvents(attachEvent.getUI());
+    // only the mentions of this user are delivered to the view
+    eventRegistration.setUserId(sendUserIdField.getValue());
+    // events since the registration may be in the snapshot already, the window keeps the messages unique
+    addNewMessages(messageSnapshot.getMessages());
   }
 
-  private Message createMsg(MessagePostedEvent event) {
-    Message msg = new Message();
-    msg.setCmdUuid(event.getCmdUuid());
-    msg.setContent(event.getContent());
-    msg.setCreated(new Date());
-    msg.setEntityId(event.getEntityId());
-    msg.setEventUuid(event.getUuid());
-    msg.setSenderUserId(event.getUserId());
-    return msg;
-  }
-
-  private List<Message> getMessagesForInitialState() {
-    ResponseEntity<Message[]> responseEntity = restTemplate.getForEntity(getMessagesUrl, Message[].class);
-    if (responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() != null) {
-      return new ArrayList<>(Arrays.asList(responseEntity.getBody()));
-    }
-    return new ArrayList<>();
+  private UiEventConsumer.Subscription registerForEvents(UI ui) {
+    return uiEventConsumer.register(events -> ui.access(() -> addNewEvent(events)), () -> {
+      // dropped for falling behind: start over with the current state. The snapshot may have to be loaded from the read API,
+      // that happens on the delivery thread, the session is only locked to show the result
+      UiEventConsumer.Subscription registration = registerForEvents(ui);
+      List<Message> messages = messageSnapshot.getMessages();
+      try {
+        ui.access(() -> {
+          eventRegistration = registration;
+          registration.setUserId(sendUserIdField.getValue());
+          messageWindow.clear();
+          messagesAdded = true;
+          addNewMessages(messages);
+        });
+      } catch (UIDetachedException uiDetachedException) {
+        registration.remove();
+      }
+    });
   }
 
   @Override
@@ -222,17 +245,12 @@ public class ChatView
     }
   }
 
-  private void setCounterForMessage(MessageRepeatedEvent event) {
-    Optional<Message> existingMessage = messagesForListBox.stream()
-                                                          .filter(message -> message.getEventUuid().equals(event.getOriginalMessageUUID()))
-                                                          .findFirst();
-    if (existingMessage.isPresent()) {
-      int messageIndex = messagesForListBox.indexOf(existingMessage.get());
-      messagesForListBox.remove(messageIndex);
-      existingMessage.get().setOccurCount(event.getOccurCount());
-      messagesForListBox.add(messageIndex, existingMessage.get());
+  private void refreshIfMessagesAdded() {
+    if (messagesAdded) {
+      messagesAdded = false;
+      messageDataProvider.refreshAll();
+      msgGrid.scrollToEnd();
     }
-    msgListBox.setItems(messagesForListBox);
   }
 
   private void sendMessage(String message, String userId) {
@@ -0,0 +1,84 @@
+package de.thi.jbsa.prototype.view;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import de.thi.jbsa.prototype.service.MessageSnapshot;
+
+/**
+ * The messages of one {@link ChatView} in the order of their arrival, indexed by their event uuid. Only the latest
+ * {@code capacity} messages are kept, the eldest one is evicted by every further message.
+ * <p>
+ * Not thread-safe, the view only uses it while holding the session lock.
+ */
+public class MessageWindow {
+
+  private final Map<UUID, Message> messages;
+
+  public MessageWindow(int capacity) {
+    this.messages = new LinkedHashMap<UUID, Message>() {
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<UUID, Message> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * @return false if a message with the same uuid is already shown, it is replaced at its position then
+   */
+  public boolean add(Message message) {
+    return messages.put(message.getEventUuid(), message) == null;
+  }
+
+  /**
+   * Applies an event of the UI topic the way the view shows it, other events than posted and repeated ones don't change the
+   * window.
+   *
+   * @param changed called with a shown message which was replaced or got a new count, its row has to be refreshed
+   * @return true if a message was added, the view then needs the new size
+   */
+  public boolean apply(AbstractEvent event, Consumer<Message> changed) {
+    if (event instanceof MessagePostedEvent) {
+      Message message = MessageSnapshot.createMsg((MessagePostedEvent) event);
+      if (add(message)) {
+        return true;
+      }
+      changed.accept(message);
+    } else if (event instanceof MessageRepeatedEvent) {
+      MessageRepeatedEvent repeatedEvent = (MessageRepeatedEvent) event;
+      get(repeatedEvent.getOriginalMessageUUID()).ifPresent(message -> {
+        message.setOccurCount(repeatedEvent.getOccurCount());
+        changed.accept(message);
+      });
+    }
+    return false;
+  }
+
+  public void clear() {
+    messages.clear();
+  }
+
+  public Optional<Message> get(UUID eventUuid) {
+    return Optional.ofNullable(messages.get(eventUuid));
+  }
+
+  /**
+   * @return a live view of the messages, the eldest first
+   */
+  public Collection<Message> getMessages() {
+    return messages.values();
+  }
+
+  public int size() {
+    return messages.size();
+  }
+}
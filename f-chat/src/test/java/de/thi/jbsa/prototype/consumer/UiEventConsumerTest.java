@@ -0,0 +1,337 @@
+package de.thi.jbsa.prototype.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.shared.Registration;
+import de.thi.jbsa.prototype.model.event.AbstractEvent;
+import de.thi.jbsa.prototype.model.event.EventList;
+import de.thi.jbsa.prototype.model.event.MentionEvent;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.service.EventCatchUp;
+import de.thi.jbsa.prototype.service.MessageSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class UiEventConsumerTest {
+
+  private EventCatchUp eventCatchUp;
+
+  private MessageSnapshot messageSnapshot;
+
+  private UiEventConsumer uiEventConsumer;
+
+  private static MessagePostedEvent event(long entityId) {
+    return new MessagePostedEvent(UUID.randomUUID(), "Message number " + entityId, entityId, "timmy");
+  }
+
+  private static MessageRepeatedEvent repeated(MessagePostedEvent event, int occurCount) {
+    return MessageRepeatedEvent.builder()
+                               .originalMessageUUID(event.getUuid())
+                               .currentMessageEventUUID(UUID.randomUUID())
+                               .occurCount(occurCount)
+                               .build();
+  }
+
+  private static void await(CountDownLatch latch)
+    throws InterruptedException {
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void slowUiDoesNotBlockOthers()
+    throws InterruptedException {
+    // given
+    CountDownLatch slowUiBlocked = new CountDownLatch(1);
+    CountDownLatch releaseSlowUi = new CountDownLatch(1);
+    uiEventConsumer.register(events -> {
+      slowUiBlocked.countDown();
+      try {
+        releaseSlowUi.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, () -> {});
+    List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+    CountDownLatch allReceived = new CountDownLatch(10);
+    uiEventConsumer.register(events -> {
+      received.addAll(events);
+      events.forEach(event -> allReceived.countDown());
+    }, () -> {});
+
+    // when
+    for (long i = 0; i < 10; i++) {
+      uiEventConsumer.listener(event(i), null);
+    }
+
+    // then
+    await(slowUiBlocked);
+    await(allReceived);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Long.valueOf(i), received.get(i).getEntityId());
+    }
+    releaseSlowUi.countDown();
+  }
+
+  @Test
+  void overflowingUiIsDropped()
+    throws InterruptedException {
+    // given
+    uiEventConsumer.stop();
+    uiEventConsumer = new UiEventConsumer(messageSnapshot, eventCatchUp, new SimpleMeterRegistry(), 2, 2, 0);
+    CountDownLatch releaseSlowUi = new CountDownLatch(1);
+    CountDownLatch dropped = new CountDownLatch(1);
+    uiEventConsumer.register(events -> {
+      try {
+        releaseSlowUi.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, dropped::countDown);
+
+    // when
+    // at most one event in delivery and two in the queue
+    for (long i = 0; i < 10; i++) {
+      uiEventConsumer.listener(event(i), null);
+    }
+
+    // then
+    await(dropped);
+    assertEquals(0, uiEventConsumer.size());
+    releaseSlowUi.countDown();
+  }
+
+  @Test
+  void removedUiReceivesNothing()
+    throws InterruptedException {
+    // given
+    List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+    Registration removed = uiEventConsumer.register(received::addAll, () -> {});
+    CountDownLatch otherReceived = new CountDownLatch(1);
+    uiEventConsumer.register(events -> otherReceived.countDown(), () -> {});
+
+    // when
+    removed.remove();
+    uiEventConsumer.listener(event(1), null);
+
+    // then
+    await(otherReceived);
+    assertEquals(1, uiEventConsumer.size());
+    assertTrue(received.isEmpty());
+  }
+
+  @Test
+  void detachedUiIsRemoved()
+    throws InterruptedException {
+    // given
+    CountDownLatch detached = new CountDownLatch(1);
+    uiEventConsumer.register(events -> {
+      detached.countDown();
+      throw new UIDetachedException();
+    }, () -> {});
+
+    // when
+    uiEventConsumer.listener(event(1), null);
+
+    // then
+    await(detached);
+    for (int i = 0; i < 50 && uiEventConsumer.size() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, uiEventConsumer.size());
+  }
+
+  @Test
+  void pendingEventsAreDeliveredAtOnce()
+    throws InterruptedException {
+    // given
+    uiEventConsumer.stop();
+    uiEventConsumer = new UiEventConsumer(messageSnapshot, eventCatchUp, new SimpleMeterRegistry(), 2, 100, 200);
+    List<List<AbstractEvent>> deliveries = new CopyOnWriteArrayList<>();
+    CountDownLatch delivered = new CountDownLatch(1);
+    uiEventConsumer.register(events -> {
+      deliveries.add(events);
+      delivered.countDown();
+    }, () -> {});
+    MessagePostedEvent postedEvent = event(1);
+    MessageRepeatedEvent repeatedTwice = repeated(postedEvent, 2);
+    MessageRepeatedEvent repeatedThrice = repeated(postedEvent, 3);
+
+    // when
+    uiEventConsumer.listener(postedEvent, null);
+    uiEventConsumer.listener(repeatedTwice, null);
+    uiEventConsumer.listener(repeatedThrice, null);
+
+    // then
+    await(delivered);
+    assertEquals(1, deliveries.size());
+    assertEquals(Arrays.asList(postedEvent, repeatedThrice), deliveries.get(0));
+  }
+
+  @Test
+  void coalesceKeepsLatestRepeatPerMessage() {
+    // given
+    MessagePostedEvent first = event(1);
+    MessagePostedEvent second = event(2);
+    MessageRepeatedEvent firstTwice = repeated(first, 2);
+    MessageRepeatedEvent secondTwice = repeated(second, 2);
+    MessageRepeatedEvent firstThrice = repeated(first, 3);
+
+    // when
+    List<AbstractEvent> coalescedEvents = UiEventConsumer.coalesce(Arrays.asList(first, firstTwice, second, secondTwice, firstThrice));
+
+    // then
+    assertEquals(Arrays.asList(first, second, secondTwice, firstThrice), coalescedEvents);
+  }
+
+  @Test
+  void missedEventsAreCaughtUpWithAfterConnectionFailure()
+    throws InterruptedException {
+    // given
+    List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+    CountDownLatch allReceived = new CountDownLatch(3);
+    uiEventConsumer.register(events -> {
+      received.addAll(events);
+      events.forEach(event -> allReceived.countDown());
+    }, () -> {});
+    MessagePostedEvent firstEvent = event(1);
+    MessagePostedEvent missedEvent = event(2);
+    // the overlap brings the first event again
+    when(eventCatchUp.getEventsAfter(1000L - UiEventConsumer.CATCH_UP_OVERLAP))
+      .thenReturn(new EventList(Arrays.asList(firstEvent, missedEvent), 2000L, false, false));
+
+    // when
+    uiEventConsumer.listener(firstEvent, 1000L);
+    uiEventConsumer.connectionInterrupted();
+    uiEventConsumer.listener(event(3), 3000L);
+
+    // then
+    await(allReceived);
+    Thread.sleep(200);
+    assertEquals(3, received.size());
+    assertEquals(missedEvent, received.get(1));
+    verify(messageSnapshot).eventReceived(missedEvent);
+  }
+
+  @Test
+  void eventsCaughtUpWithAfterResumeAreNotDeliveredAgain()
+    throws InterruptedException {
+    // given
+    List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+    CountDownLatch allReceived = new CountDownLatch(5);
+    UiEventConsumer.Subscription bernd = uiEventConsumer.register(events -> {
+      received.addAll(events);
+      events.forEach(event -> allReceived.countDown());
+    }, () -> {});
+    bernd.setUserId("bernd");
+    MessagePostedEvent missedEvent = event(2);
+    MentionEvent caughtUpMention = new MentionEvent(UUID.randomUUID(), "bernd", Collections.singletonList(0), "timmy");
+    MessagePostedEvent caughtUpEvent = event(3);
+    when(eventCatchUp.getEventsAfter(1000L - UiEventConsumer.CATCH_UP_OVERLAP))
+      .thenReturn(new EventList(Arrays.asList(missedEvent, caughtUpMention, caughtUpEvent), 3000L, false, false));
+    MessagePostedEvent nextEvent = event(4);
+
+    // when
+    uiEventConsumer.listener(event(1), 1000L);
+    uiEventConsumer.connectionInterrupted();
+    uiEventConsumer.connectionResumed();
+    verify(eventCatchUp, timeout(5000)).getEventsAfter(1000L - UiEventConsumer.CATCH_UP_OVERLAP);
+    uiEventConsumer.listener(caughtUpEvent, 3000L);
+    uiEventConsumer.mentionListener(caughtUpMention);
+    uiEventConsumer.listener(nextEvent, 4000L);
+
+    // then
+    await(allReceived);
+    Thread.sleep(200);
+    assertEquals(Arrays.asList(missedEvent, caughtUpMention, caughtUpEvent, nextEvent), received.subList(1, received.size()));
+  }
+
+  @Test
+  void uisAreReloadedIfMissedEventsCannotBeCaughtUpWith()
+    throws InterruptedException {
+    // given
+    CountDownLatch reloaded = new CountDownLatch(1);
+    uiEventConsumer.register(events -> {}, reloaded::countDown);
+    when(eventCatchUp.getEventsAfter(1000L - UiEventConsumer.CATCH_UP_OVERLAP)).thenReturn(null);
+
+    // when
+    uiEventConsumer.listener(event(1), 1000L);
+    uiEventConsumer.connectionInterrupted();
+    uiEventConsumer.listener(event(3), 3000L);
+
+    // then
+    await(reloaded);
+    verify(messageSnapshot).markStale();
+    assertEquals(0, uiEventConsumer.size());
+  }
+
+  @Test
+  void mentionsAreOnlyDeliveredToTheUisOfTheRecipient()
+    throws InterruptedException {
+    // given
+    List<AbstractEvent> receivedByBernd = new CopyOnWriteArrayList<>();
+    CountDownLatch berndReceived = new CountDownLatch(1);
+    UiEventConsumer.Subscription bernd = uiEventConsumer.register(events -> {
+      receivedByBernd.addAll(events);
+      berndReceived.countDown();
+    }, () -> {});
+    bernd.setUserId("bernd");
+    List<AbstractEvent> receivedByTimmy = new CopyOnWriteArrayList<>();
+    UiEventConsumer.Subscription timmy = uiEventConsumer.register(receivedByTimmy::addAll, () -> {});
+    timmy.setUserId("bernd");
+    timmy.setUserId("timmy");
+    MentionEvent mentionEvent = new MentionEvent(UUID.randomUUID(), "bernd", Collections.singletonList(0), "timmy");
+
+    // when
+    uiEventConsumer.mentionListener(mentionEvent);
+
+    // then
+    await(berndReceived);
+    assertEquals(Collections.singletonList(mentionEvent), receivedByBernd);
+    assertTrue(receivedByTimmy.isEmpty());
+  }
+
+  @Test
+  void removedUiReceivesNoMentions() {
+    // given
+    List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+    UiEventConsumer.Subscription subscription = uiEventConsumer.register(received::addAll, () -> {});
+    subscription.setUserId("bernd");
+
+    // when
+    subscription.remove();
+    subscription.setUserId("timmy");
+    uiEventConsumer.mentionListener(new MentionEvent(UUID.randomUUID(), "bernd", Collections.singletonList(0), "timmy"));
+    uiEventConsumer.mentionListener(new MentionEvent(UUID.randomUUID(), "timmy", Collections.singletonList(0), "bernd"));
+
+    // then
+    assertEquals(0, uiEventConsumer.size());
+    assertTrue(received.isEmpty());
+  }
+
+  @BeforeEach
+  void setUp() {
+    messageSnapshot = mock(MessageSnapshot.class);
+    eventCatchUp = mock(EventCatchUp.class);
+    uiEventConsumer = new UiEventConsumer(messageSnapshot, eventCatchUp, new SimpleMeterRegistry(), 2, 100, 0);
+  }
+
+  @AfterEach
+  void tearDown() {
+    uiEventConsumer.stop();
+  }
+}
@@ -0,0 +1,140 @@
+package de.thi.jbsa.prototype.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageSnapshotTest {
+
+  private static final String GET_MESSAGES_URL = "http://api-read/api/messages";
+
+  private MessageSnapshot messageSnapshot;
+
+  private RestTemplate restTemplate;
+
+  private static Message message(String content) {
+    return new Message(UUID.randomUUID(), content, new Date(), 1L, UUID.randomUUID(), "timmy", 1);
+  }
+
+  private static MessageRepeatedEvent repeated(UUID originalUuid, int occurCount) {
+    return MessageRepeatedEvent.builder()
+                               .originalMessageUUID(originalUuid)
+                               .currentMessageEventUUID(UUID.randomUUID())
+                               .occurCount(occurCount)
+                               .build();
+  }
+
+  private void readApiReturns(Message... messages) {
+    when(restTemplate.getForEntity(eq(GET_MESSAGES_URL), eq(Message[].class))).thenReturn(ResponseEntity.ok(messages));
+  }
+
+  @Test
+  void getMessagesLoadsOnlyOnce() {
+    // given
+    readApiReturns(message("first"));
+    messageSnapshot.loadOnStartup();
+
+    // when
+    messageSnapshot.getMessages();
+    List<Message> messages = messageSnapshot.getMessages();
+
+    // then
+    verify(restTemplate, times(1)).getForEntity(any(String.class), eq(Message[].class));
+    assertEquals(1, messages.size());
+    assertEquals("first", messages.get(0).getContent());
+  }
+
+  @Test
+  void eventsKeepSnapshotCurrent() {
+    // given
+    Message first = message("first");
+    readApiReturns(first, message("second"));
+    messageSnapshot.loadOnStartup();
+    MessagePostedEvent postedEvent = new MessagePostedEvent(UUID.randomUUID(), "third", 3L, "bernd");
+
+    // when
+    messageSnapshot.eventReceived(postedEvent);
+    messageSnapshot.eventReceived(postedEvent);
+    messageSnapshot.eventReceived(repeated(first.getEventUuid(), 2));
+
+    // then
+    List<Message> messages = messageSnapshot.getMessages();
+    // capped to the latest two
+    assertEquals(2, messages.size());
+    assertEquals("second", messages.get(0).getContent());
+    assertEquals("third", messages.get(1).getContent());
+    assertEquals(postedEvent.getUuid(), messages.get(1).getEventUuid());
+  }
+
+  @Test
+  void getMessagesReturnsCopies() {
+    // given
+    Message first = message("first");
+    readApiReturns(first);
+    messageSnapshot.loadOnStartup();
+
+    // when
+    messageSnapshot.getMessages().get(0).setOccurCount(5);
+    messageSnapshot.eventReceived(repeated(first.getEventUuid(), 3));
+
+    // then
+    assertEquals(Integer.valueOf(3), messageSnapshot.getMessages().get(0).getOccurCount());
+  }
+
+  @Test
+  void staleSnapshotIsLoadedAgain() {
+    // given
+    readApiReturns(message("first"));
+    messageSnapshot.loadOnStartup();
+    readApiReturns(message("first"), message("missed"));
+
+    // when
+    messageSnapshot.markStale();
+    List<Message> messages = messageSnapshot.getMessages();
+
+    // then
+    assertFalse(messageSnapshot.isStale());
+    assertEquals(2, messages.size());
+    assertEquals("missed", messages.get(1).getContent());
+  }
+
+  @Test
+  void failedLoadIsRetriedByNextView() {
+    // given
+    when(restTemplate.getForEntity(eq(GET_MESSAGES_URL), eq(Message[].class))).thenThrow(new ResourceAccessException("read api down"));
+    messageSnapshot.loadOnStartup();
+    messageSnapshot.eventReceived(new MessagePostedEvent(UUID.randomUUID(), "live", 3L, "bernd"));
+
+    // when
+    List<Message> messages = messageSnapshot.getMessages();
+
+    // then
+    assertTrue(messageSnapshot.isStale());
+    assertEquals(1, messages.size());
+    verify(restTemplate, times(2)).getForEntity(any(String.class), eq(Message[].class));
+  }
+
+  @BeforeEach
+  void setUp() {
+    restTemplate = mock(RestTemplate.class);
+    messageSnapshot = new MessageSnapshot(restTemplate, new SimpleMeterRegistry(), GET_MESSAGES_URL, 2);
+  }
+}
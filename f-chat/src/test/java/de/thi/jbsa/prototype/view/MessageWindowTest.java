@@ -0,0 +1,88 @@
+package de.thi.jbsa.prototype.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import de.thi.jbsa.prototype.model.event.MessagePostedEvent;
+import de.thi.jbsa.prototype.model.event.MessageRepeatedEvent;
+import de.thi.jbsa.prototype.model.model.Message;
+
+class MessageWindowTest {
+
+  private static Message message(String content) {
+    Message message = new Message();
+    message.setContent(content);
+    message.setEventUuid(UUID.randomUUID());
+    return message;
+  }
+
+  @Test
+  void addEvictsEldest() {
+    // given
+    MessageWindow messageWindow = new MessageWindow(2);
+    Message first = message("first");
+    messageWindow.add(first);
+    messageWindow.add(message("second"));
+
+    // when
+    messageWindow.add(message("third"));
+
+    // then
+    assertEquals(2, messageWindow.size());
+    assertFalse(messageWindow.get(first.getEventUuid()).isPresent());
+    List<Message> messages = new ArrayList<>(messageWindow.getMessages());
+    assertEquals("second", messages.get(0).getContent());
+    assertEquals("third", messages.get(1).getContent());
+  }
+
+  @Test
+  void addReplacesKnownMessageInPlace() {
+    // given
+    MessageWindow messageWindow = new MessageWindow(10);
+    Message first = message("first");
+    messageWindow.add(first);
+    messageWindow.add(message("second"));
+    Message firstAgain = message("first again");
+    firstAgain.setEventUuid(first.getEventUuid());
+
+    // when
+    boolean added = messageWindow.add(firstAgain);
+
+    // then
+    assertFalse(added);
+    assertEquals(2, messageWindow.size());
+    assertEquals("first again", messageWindow.getMessages().iterator().next().getContent());
+    assertTrue(messageWindow.get(first.getEventUuid()).isPresent());
+  }
+
+  @Test
+  void applyAddsPostedAndCountsRepeatedMessages() {
+    // given
+    MessageWindow messageWindow = new MessageWindow(10);
+    MessagePostedEvent postedEvent = new MessagePostedEvent(UUID.randomUUID(), "posted", 1L, "timmy");
+    MessageRepeatedEvent repeatedEvent = MessageRepeatedEvent.builder()
+                                                             .originalMessageUUID(postedEvent.getUuid())
+                                                             .currentMessageEventUUID(UUID.randomUUID())
+                                                             .occurCount(2)
+                                                             .build();
+    List<Message> changed = new ArrayList<>();
+
+    // when
+    boolean added = messageWindow.apply(postedEvent, changed::add);
+    boolean addedByRepeat = messageWindow.apply(repeatedEvent, changed::add);
+    boolean addedAgain = messageWindow.apply(postedEvent, changed::add);
+
+    // then
+    assertTrue(added);
+    assertFalse(addedByRepeat);
+    assertFalse(addedAgain);
+    assertEquals(1, messageWindow.size());
+    assertEquals(2, changed.size());
+    assertEquals(2, changed.get(0).getOccurCount());
+    assertEquals("posted", changed.get(1).getContent());
+  }
+}